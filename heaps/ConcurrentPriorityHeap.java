@@ -0,0 +1,186 @@
+/* Thread-safe priority queue of int values with int priorities for many
+ * producers and consumers, built as a MultiQueue: c * P binary heaps
+ * (PriorityHeap), where P is the number of threads expected, each behind its
+ * own lock. enQueue puts the value into a random heap, so writers almost never
+ * wait on the same lock.
+ * deQueue comes in two modes, chosen at construction:
+ * - relaxed: look at the tops of two random heaps and take the better one.
+ *   The result is close to the best in the queue (on average within O(c * P)
+ *   ranks of it) but not necessarily the best, and no global lock is taken.
+ * - strict: lock every heap in order and take the best top. This is exact, and
+ *   exact with respect to the other strict deQueues, but serializes them like a
+ *   single lock would.
+ * Each heap publishes its top priority in a volatile field, so comparing two
+ * heaps reads no locked state.
+ */
+package heaps;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentPriorityHeap {
+	public static final int DEFAULT_QUEUES_PER_THREAD = 2;
+	// relaxed attempts before a deQueue falls back to the strict scan
+	private static final int RELAXED_ATTEMPTS = 64;
+	// top of an empty heap; every real top ranks above it
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private static final class Queue {
+		final ReentrantLock lock = new ReentrantLock();
+		final PriorityHeap heap;
+		// rank of the top priority (higher leaves first), or EMPTY
+		volatile long top = EMPTY;
+
+		Queue(boolean maxHeap) {
+			heap = new PriorityHeap(maxHeap);
+		}
+	}
+
+	private final Queue[] queues;
+	private final LongAdder size = new LongAdder();
+	// true: highest priority first, false: lowest priority first
+	final boolean maxHeap;
+	final boolean relaxed;
+
+	/* Sized for the number of available processors. */
+	public ConcurrentPriorityHeap(boolean maxHeap, boolean relaxed) {
+		this(DEFAULT_QUEUES_PER_THREAD * Runtime.getRuntime().availableProcessors(), maxHeap, relaxed);
+	}
+
+	/* queueCount is c * P; two or more queues per thread keep the chance that
+	 * two threads pick the same one low.
+	 */
+	public ConcurrentPriorityHeap(int queueCount, boolean maxHeap, boolean relaxed) {
+		if (queueCount < 1) {
+			throw new IllegalArgumentException("Need at least one queue: " + queueCount);
+		}
+		queues = new Queue[queueCount];
+		for (int idx = 0; idx < queueCount; idx++) {
+			queues[idx] = new Queue(maxHeap);
+		}
+		this.maxHeap = maxHeap;
+		this.relaxed = relaxed;
+	}
+
+	/* Number of queued values. Only an estimate while other threads are
+	 * enqueuing or dequeuing.
+	 */
+	public int size() {
+		return (int) Math.max(0, Math.min(Integer.MAX_VALUE, size.sum()));
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean isRelaxed() {
+		return relaxed;
+	}
+
+	// Maps a priority to a rank where higher always leaves first.
+	private long rank(int pr) {
+		return maxHeap ? pr : -(long) pr;
+	}
+
+	private void publishTop(Queue queue) {
+		queue.top = queue.heap.isEmpty() ? EMPTY : rank(queue.heap.peekPriority());
+	}
+
+	public void enQueue(int val, int pr) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Queue queue = queues[random.nextInt(queues.length)];
+		for (int attempt = 1; !queue.lock.tryLock(); attempt++) {
+			if (attempt == queues.length) {
+				queue.lock.lock();
+				break;
+			}
+			queue = queues[random.nextInt(queues.length)];
+		}
+		try {
+			queue.heap.enQueue(val, pr);
+			publishTop(queue);
+		} finally {
+			queue.lock.unlock();
+		}
+		size.increment();
+	}
+
+	/* Removes and returns a value with the highest priority (lowest for a
+	 * min-heap), or in relaxed mode one close to it. Throws
+	 * NoSuchElementException if the queue is empty.
+	 */
+	public int deQueue() {
+		return relaxed ? deQueueRelaxed() : deQueueStrict();
+	}
+
+	private int deQueueRelaxed() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int attempt = 0; attempt < RELAXED_ATTEMPTS; attempt++) {
+			Queue first = queues[random.nextInt(queues.length)];
+			Queue second = queues[random.nextInt(queues.length)];
+			Queue queue = first.top >= second.top ? first : second;
+			if (queue.top == EMPTY) {
+				if (size.sum() <= 0) {
+					break;
+				}
+				continue;
+			}
+			if (!queue.lock.tryLock()) {
+				continue;
+			}
+			try {
+				if (!queue.heap.isEmpty()) {
+					int ret = queue.heap.deQueue();
+					publishTop(queue);
+					size.decrement();
+					return ret;
+				}
+			} finally {
+				queue.lock.unlock();
+			}
+		}
+		// nearly empty or heavily contended: settle it with a full scan
+		return deQueueStrict();
+	}
+
+	private int deQueueStrict() {
+		int locked = 0;
+		try {
+			Queue best = null;
+			for (Queue queue : queues) {
+				queue.lock.lock();
+				locked++;
+				if (!queue.heap.isEmpty() && (best == null || queue.top > best.top)) {
+					best = queue;
+				}
+			}
+			if (best == null) {
+				throw new NoSuchElementException("Priority queue is empty");
+			}
+			int ret = best.heap.deQueue();
+			publishTop(best);
+			size.decrement();
+			return ret;
+		} finally {
+			for (int idx = 0; idx < locked; idx++) {
+				queues[idx].lock.unlock();
+			}
+		}
+	}
+
+	public void clear() {
+		for (Queue queue : queues) {
+			queue.lock.lock();
+			try {
+				int removed = queue.heap.size();
+				queue.heap.clear();
+				publishTop(queue);
+				size.add(-removed);
+			} finally {
+				queue.lock.unlock();
+			}
+		}
+	}
+}
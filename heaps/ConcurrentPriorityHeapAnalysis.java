@@ -0,0 +1,89 @@
+/* Throughput of ConcurrentPriorityHeap, relaxed and strict, against a
+ * PriorityHeap behind one global lock. The queue is filled to a steady size,
+ * then every thread alternates enQueue and deQueue for a fixed time, so each
+ * thread is both a producer and a consumer. Prints the total operations per
+ * second as CSV for 1, 2, 4, ... threads.
+ * Usage: java heaps.ConcurrentPriorityHeapAnalysis [maxThreads] [secondsPerRun] [queueSize]
+ */
+package heaps;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentPriorityHeapAnalysis {
+
+	private static long checksum;
+
+	private interface Target {
+		void enQueue(int val, int pr);
+		int deQueue();
+	}
+
+	private static Target multiQueue(int threads, boolean relaxed) {
+		int queues = ConcurrentPriorityHeap.DEFAULT_QUEUES_PER_THREAD * threads;
+		ConcurrentPriorityHeap heap = new ConcurrentPriorityHeap(queues, false, relaxed);
+		return new Target() {
+			public void enQueue(int val, int pr) { heap.enQueue(val, pr); }
+			public int deQueue() { return heap.deQueue(); }
+		};
+	}
+
+	private static Target globalLock() {
+		PriorityHeap heap = new PriorityHeap(false);
+		return new Target() {
+			public synchronized void enQueue(int val, int pr) { heap.enQueue(val, pr); }
+			public synchronized int deQueue() { return heap.deQueue(); }
+		};
+	}
+
+	private static double measure(Target target, int threads, int queueSize, long millis)
+			throws InterruptedException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int idx = 0; idx < queueSize; idx++) {
+			target.enQueue(idx, random.nextInt());
+		}
+		LongAdder operations = new LongAdder();
+		LongAdder sums = new LongAdder();
+		long deadline = System.currentTimeMillis() + millis;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread(() -> {
+				ThreadLocalRandom local = ThreadLocalRandom.current();
+				long done = 0;
+				long sum = 0;
+				while ((done & 1023) != 0 || System.currentTimeMillis() < deadline) {
+					target.enQueue((int) done, local.nextInt());
+					sum += target.deQueue();
+					done += 2;
+				}
+				operations.add(done);
+				sums.add(sum);
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		checksum += sums.sum();
+		return operations.sum() * 1000.0 / millis;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		long millis = args.length > 1 ? Long.parseLong(args[1]) * 1000 : 2000;
+		int queueSize = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+		System.out.println("===================Analysis Start===================");
+		// warmup
+		measure(multiQueue(2, true), 2, queueSize, millis / 2);
+		measure(multiQueue(2, false), 2, queueSize, millis / 2);
+		measure(globalLock(), 2, queueSize, millis / 2);
+		System.out.println("Queue,Threads,OpsPerSecond");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			System.out.printf("relaxed,%d,%.0f%n", threads, measure(multiQueue(threads, true), threads, queueSize, millis));
+			System.out.printf("strict,%d,%.0f%n", threads, measure(multiQueue(threads, false), threads, queueSize, millis));
+			System.out.printf("global-lock,%d,%.0f%n", threads, measure(globalLock(), threads, queueSize, millis));
+		}
+		System.out.println("===================Analysis Complete================");
+		System.err.println("checksum " + checksum);
+	}
+}
@@ -0,0 +1,207 @@
+/* Priority queue of int values with int priorities, kept in a d-ary heap with
+ * d = 2, 4 or 8 (default 4).
+ * A wider node makes the heap shallower (log_d n levels instead of log_2 n),
+ * and all d children of a node sit next to each other in the priority array,
+ * so choosing the best child reads one cache line instead of one per level.
+ * The root is stored at index d - 1 instead of 0, which makes every group of
+ * siblings start at a multiple of d and so never straddle more lines than
+ * it has to.
+ * Removing the top uses Floyd's bottom-up sift-down: the hole goes all the
+ * way down along the best children without comparing against the element
+ * being placed, and that element (which came from the bottom, so usually
+ * belongs near it) is then sifted up the few levels it needs. createHeap
+ * builds the heap bottom-up in O(n) with the same sift-down.
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class DAryHeap {
+	public static final int DEFAULT_ARITY = 4;
+
+	int[] input;
+	int[] priority;
+	// current size of the heap.
+	int size;
+	final int arity;
+	private final int shift; // log2(arity)
+	private final int root; // index of the root, arity - 1
+	// true: highest priority first, false: lowest priority first
+	final boolean maxHeap;
+
+	public DAryHeap(boolean maxHeap) {
+		this(DEFAULT_ARITY, PriorityHeap.DEFAULT_CAPACITY, maxHeap);
+	}
+
+	public DAryHeap(int arity, boolean maxHeap) {
+		this(arity, PriorityHeap.DEFAULT_CAPACITY, maxHeap);
+	}
+
+	public DAryHeap(int arity, int capacity, boolean maxHeap) {
+		if (arity != 2 && arity != 4 && arity != 8) {
+			throw new IllegalArgumentException("Arity must be 2, 4 or 8: " + arity);
+		}
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		this.arity = arity;
+		this.shift = Integer.numberOfTrailingZeros(arity);
+		this.root = arity - 1;
+		this.maxHeap = maxHeap;
+		input = new int[root + Math.max(1, capacity)];
+		priority = new int[input.length];
+		size = 0;
+	}
+
+	/* Builds a heap from copies of the values and their priorities in O(n).
+	 * The ith index of pr is the priority of the ith value in in.
+	 */
+	public DAryHeap(int arity, int[] in, int[] pr, boolean maxHeap) {
+		this(arity, in.length, maxHeap);
+		if (in.length != pr.length) {
+			throw new IllegalArgumentException("Got " + in.length + " values but " + pr.length + " priorities");
+		}
+		System.arraycopy(in, 0, input, root, in.length);
+		System.arraycopy(pr, 0, priority, root, pr.length);
+		size = in.length;
+		createHeap();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getArity() {
+		return arity;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	// true if priority a should leave the queue before priority b
+	private boolean before(int a, int b) {
+		return maxHeap ? a > b : a < b;
+	}
+
+	private int firstChild(int idx) {
+		return (idx - arity + 2) << shift;
+	}
+
+	private int parent(int idx) {
+		return (idx >>> shift) + arity - 2;
+	}
+
+	public void enQueue(int val, int pr) {
+		if (root + size == input.length) {
+			grow();
+		}
+		siftUp(root + size++, root, val, pr);
+	}
+
+	/* Removes and returns the value with the highest priority (lowest for a
+	 * min-heap). Throws NoSuchElementException if the queue is empty.
+	 */
+	public int deQueue() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		int ret = input[root];
+		size--;
+		if (size > 0) {
+			int last = root + size;
+			siftDown(root, input[last], priority[last]);
+		}
+		return ret;
+	}
+
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return input[root];
+	}
+
+	public int peekPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return priority[root];
+	}
+
+	private void grow() {
+		long capacity = Math.min(2L * input.length, Integer.MAX_VALUE - 8);
+		if (capacity == input.length) {
+			throw new IllegalStateException("Priority queue is full");
+		}
+		input = Arrays.copyOf(input, (int) capacity);
+		priority = Arrays.copyOf(priority, (int) capacity);
+	}
+
+	/* Moves the hole at idx up, but not past top, until val with priority pr
+	 * fits there.
+	 */
+	private void siftUp(int idx, int top, int val, int pr) {
+		while (idx > top) {
+			int parentIdx = parent(idx);
+			if (!before(pr, priority[parentIdx])) {
+				break;
+			}
+			input[idx] = input[parentIdx];
+			priority[idx] = priority[parentIdx];
+			idx = parentIdx;
+		}
+		input[idx] = val;
+		priority[idx] = pr;
+	}
+
+	/* Floyd's sift-down: takes the hole at top down to a leaf along the best
+	 * children, then places val with priority pr by sifting it back up. Costs
+	 * d - 1 comparisons per level on the way down and usually very few on the
+	 * way up, against d per level for the textbook version.
+	 */
+	private void siftDown(int top, int val, int pr) {
+		int end = root + size;
+		int lastParent = parent(end - 1); // nodes past this are leaves
+		int idx = top;
+		while (idx <= lastParent) {
+			int childIdx = firstChild(idx);
+			int best = childIdx;
+			int lastChild = Math.min(childIdx + arity, end);
+			for (int c = childIdx + 1; c < lastChild; c++) {
+				if (before(priority[c], priority[best])) {
+					best = c;
+				}
+			}
+			input[idx] = input[best];
+			priority[idx] = priority[best];
+			idx = best;
+		}
+		siftUp(idx, top, val, pr);
+	}
+
+	/* Floyd's bottom-up construction: sifts down every internal node, from the
+	 * last one back to the root. Takes O(n) time.
+	 */
+	public void createHeap() {
+		if (size < 2) {
+			return;
+		}
+		for (int idx = parent(root + size - 1); idx >= root; idx--) {
+			siftDown(idx, input[idx], priority[idx]);
+		}
+	}
+
+	public void print() {
+		System.out.println();
+		for (int idx = root; idx < root + size; idx++) {
+			System.out.print(input[idx] + ":" + priority[idx] + " ");
+		}
+		System.out.println();
+	}
+}
@@ -0,0 +1,76 @@
+/* Compares the binary heaps (Heap and PriorityHeap) against DAryHeap with
+ * arity 2, 4 and 8. For each size it times building a heap from n random
+ * priorities (createHeap) and then draining it with deQueue, and prints
+ * nanoseconds per element as CSV. Heap has no deQueue, so it is only built.
+ * Every size runs once to warm up and once for the record.
+ * Usage: java heaps.DAryHeapAnalysis [maxPowerOfTen]
+ * The default goes up to 10^7; 10^8 needs about 2GB of heap.
+ */
+package heaps;
+
+import java.util.Random;
+
+public class DAryHeapAnalysis {
+
+	private static long checksum;
+
+	private static int[] getArray(int size, long seed) {
+		Random rm = new Random(seed);
+		int[] input = new int[size];
+		for (int idx = 0; idx < size; idx++) {
+			input[idx] = rm.nextInt();
+		}
+		return input;
+	}
+
+	private static void report(boolean print, String heap, int n, String operation, long nanos) {
+		if (print) {
+			System.out.printf("%s,%d,%s,%.2f%n", heap, n, operation, (double) nanos / n);
+		}
+	}
+
+	private static void measure(int[] values, int[] priorities, boolean print) {
+		int n = values.length;
+
+		int[] copy = priorities.clone();
+		long start = System.nanoTime();
+		Heap heap = new Heap(copy);
+		heap.createHeap();
+		report(print, "Heap", n, "createHeap", System.nanoTime() - start);
+		checksum += heap.getMax();
+
+		start = System.nanoTime();
+		PriorityHeap binary = new PriorityHeap(values, priorities);
+		report(print, "PriorityHeap", n, "createHeap", System.nanoTime() - start);
+		start = System.nanoTime();
+		while (!binary.isEmpty()) {
+			checksum += binary.deQueue();
+		}
+		report(print, "PriorityHeap", n, "drain", System.nanoTime() - start);
+
+		for (int arity = 2; arity <= 8; arity *= 2) {
+			start = System.nanoTime();
+			DAryHeap dary = new DAryHeap(arity, values, priorities, true);
+			report(print, "DAryHeap-" + arity, n, "createHeap", System.nanoTime() - start);
+			start = System.nanoTime();
+			while (!dary.isEmpty()) {
+				checksum += dary.deQueue();
+			}
+			report(print, "DAryHeap-" + arity, n, "drain", System.nanoTime() - start);
+		}
+	}
+
+	public static void main(String[] args) {
+		int maxPower = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+		System.out.println("===================Analysis Start===================");
+		System.out.println("Heap,Elements,Operation,NanosPerElement");
+		for (int power = 3, n = 1000; power <= maxPower; power++, n *= 10) {
+			int[] values = getArray(n, power);
+			int[] priorities = getArray(n, -power);
+			measure(values, priorities, false);
+			measure(values, priorities, true);
+		}
+		System.out.println("===================Analysis Complete================");
+		System.err.println("checksum " + checksum);
+	}
+}
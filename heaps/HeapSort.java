@@ -1,12 +1,22 @@
 /* Class to implement heap sort using already 
  * created Heap.java class.
+ * sort and parallelSort are the standalone versions for int[], long[] and
+ * object arrays with a comparator; see HeapSortAnalysis for timings against
+ * Arrays.sort.
  */
 package heaps;
 import heaps.Heap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
 
 public class HeapSort {
+	// smallest chunk worth handing to its own thread in parallelSort
+	static final int MIN_PARALLEL_CHUNK = 1 << 13;
 	
 	/* Heap Sort
 	 * Create a heap first.
@@ -33,6 +43,279 @@ public class HeapSort {
 
 	}
 
+	/* Sorts input in ascending order in place, without the Heap class: the
+	 * sift-down is iterative and bottom-up (Wegener's variant). Instead of
+	 * comparing the sifted value against both children on every level, it
+	 * follows the larger child all the way down to a leaf, one comparison per
+	 * level, and then climbs back up to where the value belongs. The value
+	 * being sifted after an extraction came from the bottom, so the climb is
+	 * short, and this takes about n log n comparisons against 2 n log n.
+	 */
+	public static void sort(int[] input) {
+		sort(input, 0, input.length);
+	}
+
+	// Sorts input[from] up to, but not including, input[to].
+	public static void sort(int[] input, int from, int to) {
+		checkRange(input.length, from, to);
+		int n = to - from;
+		for (int idx = n / 2 - 1; idx >= 0; idx--) {
+			siftDown(input, from, idx, n);
+		}
+		for (int end = n - 1; end > 0; end--) {
+			int max = input[from];
+			input[from] = input[from + end];
+			input[from + end] = max;
+			siftDown(input, from, 0, end);
+		}
+	}
+
+	/* Bottom-up sift-down of the value at root in the max-heap
+	 * input[from .. from + n).
+	 */
+	private static void siftDown(int[] input, int from, int root, int n) {
+		int val = input[from + root];
+		int idx = root;
+		while (idx < (n - 1) >>> 1) { // both children exist
+			idx = 2 * idx + 1;
+			if (input[from + idx + 1] > input[from + idx]) {
+				idx++;
+			}
+		}
+		if (idx < n >>> 1) { // only a left child
+			idx = 2 * idx + 1;
+		}
+		while (val > input[from + idx]) {
+			idx = (idx - 1) >>> 1;
+		}
+		// val goes to idx and everything above it on the path moves up a level
+		int carry = input[from + idx];
+		input[from + idx] = val;
+		while (idx > root) {
+			idx = (idx - 1) >>> 1;
+			int temp = input[from + idx];
+			input[from + idx] = carry;
+			carry = temp;
+		}
+	}
+
+	public static void sort(long[] input) {
+		sort(input, 0, input.length);
+	}
+
+	public static void sort(long[] input, int from, int to) {
+		checkRange(input.length, from, to);
+		int n = to - from;
+		for (int idx = n / 2 - 1; idx >= 0; idx--) {
+			siftDown(input, from, idx, n);
+		}
+		for (int end = n - 1; end > 0; end--) {
+			long max = input[from];
+			input[from] = input[from + end];
+			input[from + end] = max;
+			siftDown(input, from, 0, end);
+		}
+	}
+
+	private static void siftDown(long[] input, int from, int root, int n) {
+		long val = input[from + root];
+		int idx = root;
+		while (idx < (n - 1) >>> 1) {
+			idx = 2 * idx + 1;
+			if (input[from + idx + 1] > input[from + idx]) {
+				idx++;
+			}
+		}
+		if (idx < n >>> 1) {
+			idx = 2 * idx + 1;
+		}
+		while (val > input[from + idx]) {
+			idx = (idx - 1) >>> 1;
+		}
+		long carry = input[from + idx];
+		input[from + idx] = val;
+		while (idx > root) {
+			idx = (idx - 1) >>> 1;
+			long temp = input[from + idx];
+			input[from + idx] = carry;
+			carry = temp;
+		}
+	}
+
+	/* Sorts input in the order given by comparator. Like every heapsort it is
+	 * not stable: equal elements may change their relative order.
+	 */
+	public static <T> void sort(T[] input, Comparator<? super T> comparator) {
+		sort(input, 0, input.length, comparator);
+	}
+
+	public static <T> void sort(T[] input, int from, int to, Comparator<? super T> comparator) {
+		checkRange(input.length, from, to);
+		int n = to - from;
+		for (int idx = n / 2 - 1; idx >= 0; idx--) {
+			siftDown(input, from, idx, n, comparator);
+		}
+		for (int end = n - 1; end > 0; end--) {
+			T max = input[from];
+			input[from] = input[from + end];
+			input[from + end] = max;
+			siftDown(input, from, 0, end, comparator);
+		}
+	}
+
+	private static <T> void siftDown(T[] input, int from, int root, int n, Comparator<? super T> comparator) {
+		T val = input[from + root];
+		int idx = root;
+		while (idx < (n - 1) >>> 1) {
+			idx = 2 * idx + 1;
+			if (comparator.compare(input[from + idx + 1], input[from + idx]) > 0) {
+				idx++;
+			}
+		}
+		if (idx < n >>> 1) {
+			idx = 2 * idx + 1;
+		}
+		while (comparator.compare(val, input[from + idx]) > 0) {
+			idx = (idx - 1) >>> 1;
+		}
+		T carry = input[from + idx];
+		input[from + idx] = val;
+		while (idx > root) {
+			idx = (idx - 1) >>> 1;
+			T temp = input[from + idx];
+			input[from + idx] = carry;
+			carry = temp;
+		}
+	}
+
+	private static void checkRange(int length, int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length);
+		}
+	}
+
+	/* Parallel versions: the range is cut into one chunk per worker of the
+	 * common ForkJoinPool, each chunk is heap-sorted on its own thread, and
+	 * the sorted chunks are combined with a k-way merge through a heap of chunk
+	 * heads. The merge needs a buffer as large as the range, so unlike sort
+	 * these are not in place. Ranges shorter than MIN_PARALLEL_CHUNK per
+	 * worker are sorted sequentially.
+	 */
+	public static void parallelSort(int[] input) {
+		parallelSort(input, 0, input.length);
+	}
+
+	public static void parallelSort(int[] input, int from, int to) {
+		checkRange(input.length, from, to);
+		int[] bounds = chunkBounds(from, to);
+		if (bounds == null) {
+			sort(input, from, to);
+			return;
+		}
+		IntStream.range(0, bounds.length - 1).parallel().forEach(c -> sort(input, bounds[c], bounds[c + 1]));
+		int[] buffer = new int[to - from];
+		mergeChunks(bounds, (i, j) -> Integer.compare(input[i], input[j]), (i, out) -> buffer[out] = input[i]);
+		System.arraycopy(buffer, 0, input, from, buffer.length);
+	}
+
+	public static void parallelSort(long[] input) {
+		parallelSort(input, 0, input.length);
+	}
+
+	public static void parallelSort(long[] input, int from, int to) {
+		checkRange(input.length, from, to);
+		int[] bounds = chunkBounds(from, to);
+		if (bounds == null) {
+			sort(input, from, to);
+			return;
+		}
+		IntStream.range(0, bounds.length - 1).parallel().forEach(c -> sort(input, bounds[c], bounds[c + 1]));
+		long[] buffer = new long[to - from];
+		mergeChunks(bounds, (i, j) -> Long.compare(input[i], input[j]), (i, out) -> buffer[out] = input[i]);
+		System.arraycopy(buffer, 0, input, from, buffer.length);
+	}
+
+	public static <T> void parallelSort(T[] input, Comparator<? super T> comparator) {
+		parallelSort(input, 0, input.length, comparator);
+	}
+
+	public static <T> void parallelSort(T[] input, int from, int to, Comparator<? super T> comparator) {
+		checkRange(input.length, from, to);
+		int[] bounds = chunkBounds(from, to);
+		if (bounds == null) {
+			sort(input, from, to, comparator);
+			return;
+		}
+		IntStream.range(0, bounds.length - 1).parallel().forEach(c -> sort(input, bounds[c], bounds[c + 1], comparator));
+		Object[] buffer = new Object[to - from];
+		mergeChunks(bounds, (i, j) -> comparator.compare(input[i], input[j]), (i, out) -> buffer[out] = input[i]);
+		System.arraycopy(buffer, 0, input, from, buffer.length);
+	}
+
+	/* Start of every chunk followed by the end of the range, or null if the
+	 * range is better sorted on one thread.
+	 */
+	private static int[] chunkBounds(int from, int to) {
+		int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism(), (to - from) / MIN_PARALLEL_CHUNK);
+		if (chunks < 2) {
+			return null;
+		}
+		int[] bounds = new int[chunks + 1];
+		for (int c = 0; c <= chunks; c++) {
+			bounds[c] = from + (int) ((long) (to - from) * c / chunks);
+		}
+		return bounds;
+	}
+
+	private interface ChunkCopy {
+		void copy(int inputIdx, int bufferIdx);
+	}
+
+	/* Merges the sorted chunks between bounds by repeatedly taking the
+	 * smallest head: a min-heap of chunk numbers keyed by their heads, so each
+	 * element costs O(log k) comparisons for k chunks. compare takes two
+	 * positions in the input, copy copies an input position to a buffer slot.
+	 */
+	private static void mergeChunks(int[] bounds, IntBinaryOperator compare, ChunkCopy copy) {
+		int chunks = bounds.length - 1;
+		int[] head = Arrays.copyOf(bounds, chunks); // next position in each chunk
+		int[] heap = new int[chunks];
+		int size = 0;
+		for (int c = 0; c < chunks; c++) {
+			if (bounds[c] < bounds[c + 1]) {
+				heap[size++] = c;
+			}
+		}
+		for (int idx = size / 2 - 1; idx >= 0; idx--) {
+			siftDownChunk(heap, idx, size, head, compare);
+		}
+		for (int out = 0; size > 0; out++) {
+			int c = heap[0];
+			copy.copy(head[c]++, out);
+			if (head[c] == bounds[c + 1]) {
+				heap[0] = heap[--size];
+			}
+			siftDownChunk(heap, 0, size, head, compare);
+		}
+	}
+
+	private static void siftDownChunk(int[] heap, int idx, int size, int[] head, IntBinaryOperator compare) {
+		int c = heap[idx];
+		int half = size >>> 1;
+		while (idx < half) {
+			int childIdx = 2 * idx + 1;
+			if (childIdx + 1 < size && compare.applyAsInt(head[heap[childIdx + 1]], head[heap[childIdx]]) < 0) {
+				childIdx++;
+			}
+			if (compare.applyAsInt(head[heap[childIdx]], head[c]) >= 0) {
+				break;
+			}
+			heap[idx] = heap[childIdx];
+			idx = childIdx;
+		}
+		heap[idx] = c;
+	}
+
 	private static void print(int[] input) {
 		System.out.println();
 		for (int idx = 0; idx < input.length; idx++) {
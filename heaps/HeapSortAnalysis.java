@@ -0,0 +1,135 @@
+/* Times HeapSort against Arrays.sort on random arrays of 10^4 up to 10^N
+ * elements: the old Heap-based sort (recursive heapify), HeapSort.sort and
+ * parallelSort for int[], long[] and Integer[] with a comparator, and the
+ * matching Arrays.sort and Arrays.parallelSort. Prints milliseconds per sort
+ * as CSV. Every size runs once to warm up and once for the record.
+ * Usage: java heaps.HeapSortAnalysis [maxPowerOfTen]
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+public class HeapSortAnalysis {
+
+	private static long checksum;
+
+	private static int[] getArray(int size, long seed) {
+		Random rm = new Random(seed);
+		int[] input = new int[size];
+		for (int idx = 0; idx < size; idx++) {
+			input[idx] = rm.nextInt();
+		}
+		return input;
+	}
+
+	private static void report(boolean print, String sort, String type, int n, long nanos) {
+		if (print) {
+			System.out.printf("%s,%s,%d,%.2f%n", sort, type, n, nanos / 1e6);
+		}
+	}
+
+	// The loop from HeapSort.doHeapSort, without the printing.
+	private static void recursiveHeapSort(int[] input) {
+		Heap hp = new Heap(input);
+		hp.createHeap();
+		for (int size = input.length - 1; size > 0; size--) {
+			int temp = hp.array[0];
+			hp.array[0] = hp.array[size];
+			hp.array[size] = temp;
+			hp.capacity--;
+			hp.heapify(0);
+		}
+	}
+
+	private static void measure(int[] values, boolean print) {
+		int n = values.length;
+		long[] longs = new long[n];
+		Integer[] boxed = new Integer[n];
+		for (int idx = 0; idx < n; idx++) {
+			longs[idx] = values[idx];
+			boxed[idx] = values[idx];
+		}
+		Comparator<Integer> comparator = Comparator.naturalOrder();
+
+		int[] ints = values.clone();
+		long start = System.nanoTime();
+		recursiveHeapSort(ints);
+		report(print, "Heap.heapify", "int", n, System.nanoTime() - start);
+		checksum += ints[n / 2];
+
+		ints = values.clone();
+		start = System.nanoTime();
+		HeapSort.sort(ints);
+		report(print, "HeapSort.sort", "int", n, System.nanoTime() - start);
+		checksum += ints[n / 2];
+
+		ints = values.clone();
+		start = System.nanoTime();
+		HeapSort.parallelSort(ints);
+		report(print, "HeapSort.parallelSort", "int", n, System.nanoTime() - start);
+		checksum += ints[n / 2];
+
+		ints = values.clone();
+		start = System.nanoTime();
+		Arrays.sort(ints);
+		report(print, "Arrays.sort", "int", n, System.nanoTime() - start);
+		checksum += ints[n / 2];
+
+		ints = values.clone();
+		start = System.nanoTime();
+		Arrays.parallelSort(ints);
+		report(print, "Arrays.parallelSort", "int", n, System.nanoTime() - start);
+		checksum += ints[n / 2];
+
+		long[] copy = longs.clone();
+		start = System.nanoTime();
+		HeapSort.sort(copy);
+		report(print, "HeapSort.sort", "long", n, System.nanoTime() - start);
+		checksum += copy[n / 2];
+
+		copy = longs.clone();
+		start = System.nanoTime();
+		HeapSort.parallelSort(copy);
+		report(print, "HeapSort.parallelSort", "long", n, System.nanoTime() - start);
+		checksum += copy[n / 2];
+
+		copy = longs.clone();
+		start = System.nanoTime();
+		Arrays.sort(copy);
+		report(print, "Arrays.sort", "long", n, System.nanoTime() - start);
+		checksum += copy[n / 2];
+
+		Integer[] objects = boxed.clone();
+		start = System.nanoTime();
+		HeapSort.sort(objects, comparator);
+		report(print, "HeapSort.sort", "Integer", n, System.nanoTime() - start);
+		checksum += objects[n / 2];
+
+		objects = boxed.clone();
+		start = System.nanoTime();
+		HeapSort.parallelSort(objects, comparator);
+		report(print, "HeapSort.parallelSort", "Integer", n, System.nanoTime() - start);
+		checksum += objects[n / 2];
+
+		objects = boxed.clone();
+		start = System.nanoTime();
+		Arrays.sort(objects, comparator);
+		report(print, "Arrays.sort", "Integer", n, System.nanoTime() - start);
+		checksum += objects[n / 2];
+	}
+
+	public static void main(String[] args) {
+		int maxPower = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+		System.out.println("===================Analysis Start===================");
+		System.out.println("Sort,Type,Elements,Millis");
+		for (int power = 4, n = 10000; power <= maxPower; power++, n *= 10) {
+			int[] values = getArray(n, power);
+			measure(values, false);
+			measure(values, true);
+		}
+		System.out.println("===================Analysis Complete================");
+		System.err.println("checksum " + checksum);
+	}
+}
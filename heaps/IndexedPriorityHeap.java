@@ -0,0 +1,235 @@
+/* Indexed priority queue of int ids with int priorities, kept in a binary heap.
+ * Besides the heap itself (id and priority per slot) it keeps a position map
+ * from id to heap slot, so an id that is already queued can be found in O(1)
+ * and have its priority changed or be removed in O(log n), e.g. for
+ * decrease-key in Dijkstra or for cancelling a timeout.
+ * Ids are non-negative ints and index the position map directly, so they
+ * should be dense (vertex numbers, slot numbers); the map grows to the
+ * largest id seen. All storage is primitive arrays: 4 bytes per id plus
+ * 8 bytes per queued element, and nothing is allocated per operation.
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class IndexedPriorityHeap implements IntPriorityQueue {
+	private static final int ABSENT = -1;
+
+	// heap slot -> id and its priority
+	int[] ids;
+	int[] priority;
+	// id -> heap slot, or ABSENT
+	int[] position;
+	int size;
+	// true: highest priority first, false: lowest priority first
+	final boolean maxHeap;
+
+	public IndexedPriorityHeap(boolean maxHeap) {
+		this(PriorityHeap.DEFAULT_CAPACITY, maxHeap);
+	}
+
+	/* idCapacity is the expected number of ids; the arrays grow past it if
+	 * needed.
+	 */
+	public IndexedPriorityHeap(int idCapacity, boolean maxHeap) {
+		if (idCapacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + idCapacity);
+		}
+		int capacity = Math.max(1, idCapacity);
+		ids = new int[capacity];
+		priority = new int[capacity];
+		position = new int[capacity];
+		Arrays.fill(position, ABSENT);
+		size = 0;
+		this.maxHeap = maxHeap;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int id) {
+		return id >= 0 && id < position.length && position[id] != ABSENT;
+	}
+
+	// Priority of a queued id.
+	public int priorityOf(int id) {
+		return priority[slotOf(id)];
+	}
+
+	public void clear() {
+		for (int idx = 0; idx < size; idx++) {
+			position[ids[idx]] = ABSENT;
+		}
+		size = 0;
+	}
+
+	// true if priority a should leave the queue before priority b
+	private boolean before(int a, int b) {
+		return maxHeap ? a > b : a < b;
+	}
+
+	/* Queues id with priority pr. Throws IllegalArgumentException if id is
+	 * negative or already queued.
+	 */
+	public void enQueue(int id, int pr) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Negative id: " + id);
+		}
+		if (id >= position.length) {
+			growPositions(id);
+		}
+		if (position[id] != ABSENT) {
+			throw new IllegalArgumentException("Id " + id + " is already queued");
+		}
+		if (size == ids.length) {
+			growHeap();
+		}
+		siftUp(size++, id, pr);
+	}
+
+	/* Removes and returns the id with the highest priority (lowest for a
+	 * min-heap). Throws NoSuchElementException if the queue is empty.
+	 */
+	public int deQueue() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		int ret = ids[0];
+		removeAt(0);
+		return ret;
+	}
+
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return ids[0];
+	}
+
+	public int peekPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return priority[0];
+	}
+
+	/* Sets the priority of a queued id in O(log n); the id moves up or down
+	 * depending on which way its priority changed.
+	 */
+	public void changePriority(int id, int pr) {
+		int idx = slotOf(id);
+		if (before(pr, priority[idx])) {
+			siftUp(idx, id, pr);
+		} else {
+			siftDown(idx, id, pr);
+		}
+	}
+
+	/* Removes id from the queue in O(log n). Returns false if it was not
+	 * queued.
+	 */
+	public boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		removeAt(position[id]);
+		return true;
+	}
+
+	private int slotOf(int id) {
+		if (!contains(id)) {
+			throw new NoSuchElementException("Id " + id + " is not queued");
+		}
+		return position[id];
+	}
+
+	// Fills slot idx with the last element and restores the heap around it.
+	private void removeAt(int idx) {
+		position[ids[idx]] = ABSENT;
+		size--;
+		if (idx == size) {
+			return;
+		}
+		int id = ids[size];
+		int pr = priority[size];
+		if (idx > 0 && before(pr, priority[(idx - 1) >>> 1])) {
+			siftUp(idx, id, pr);
+		} else {
+			siftDown(idx, id, pr);
+		}
+	}
+
+	private void growHeap() {
+		int capacity = grownCapacity(ids.length, ids.length + 1);
+		ids = Arrays.copyOf(ids, capacity);
+		priority = Arrays.copyOf(priority, capacity);
+	}
+
+	private void growPositions(int id) {
+		int oldLength = position.length;
+		position = Arrays.copyOf(position, grownCapacity(oldLength, id + 1));
+		Arrays.fill(position, oldLength, position.length, ABSENT);
+	}
+
+	private static int grownCapacity(int length, int needed) {
+		long capacity = Math.max((long) needed, 2L * length);
+		return (int) Math.min(capacity, Integer.MAX_VALUE - 8);
+	}
+
+	/* Moves the hole at idx up until id with priority pr fits there. */
+	private void siftUp(int idx, int id, int pr) {
+		while (idx > 0) {
+			int parentIdx = (idx - 1) >>> 1;
+			if (!before(pr, priority[parentIdx])) {
+				break;
+			}
+			move(parentIdx, idx);
+			idx = parentIdx;
+		}
+		place(idx, id, pr);
+	}
+
+	/* Moves the hole at idx down until id with priority pr fits there. */
+	private void siftDown(int idx, int id, int pr) {
+		int half = size >>> 1; // nodes from here on are leaves
+		while (idx < half) {
+			int childIdx = 2 * idx + 1;
+			int rightChildIdx = childIdx + 1;
+			if (rightChildIdx < size && before(priority[rightChildIdx], priority[childIdx])) {
+				childIdx = rightChildIdx;
+			}
+			if (!before(priority[childIdx], pr)) {
+				break;
+			}
+			move(childIdx, idx);
+			idx = childIdx;
+		}
+		place(idx, id, pr);
+	}
+
+	private void move(int from, int to) {
+		ids[to] = ids[from];
+		priority[to] = priority[from];
+		position[ids[to]] = to;
+	}
+
+	private void place(int idx, int id, int pr) {
+		ids[idx] = id;
+		priority[idx] = pr;
+		position[id] = idx;
+	}
+
+	public void print() {
+		System.out.println();
+		for (int idx = 0; idx < size; idx++) {
+			System.out.print(ids[idx] + ":" + priority[idx] + " ");
+		}
+		System.out.println();
+	}
+}
@@ -0,0 +1,77 @@
+/* Indexed priority queue of int ids with int priorities, as used by graph
+ * searches like Dijkstra's: an id can be queued once, and the priority of a
+ * queued id can be changed (decrease-key) or the id removed.
+ * Implementations differ in which operations are cheap, so code that takes
+ * an IntPriorityQueue, or a Kind to create one, can switch between them:
+ * - IndexedPriorityHeap: binary heap, O(log n) for everything.
+ * - PairingHeap: O(1) enQueue, amortized o(log n) decrease-key, O(log n)
+ *   amortized deQueue. Melding two whole heaps is O(largest id), since
+ *   the ids index its arrays; only linking the two trees is O(1).
+ * - RadixHeap: monotone, non-negative priorities only, O(1) enQueue and
+ *   decrease-key, O(log C) amortized deQueue for priorities up to C.
+ */
+package heaps;
+
+public interface IntPriorityQueue {
+
+	/* The implementations, each creating a queue that dequeues the lowest
+	 * priority first.
+	 */
+	enum Kind {
+		BINARY, PAIRING, RADIX;
+
+		// idCapacity is the expected number of ids; the queue grows past it.
+		public IntPriorityQueue create(int idCapacity) {
+			switch (this) {
+			case PAIRING:
+				return new PairingHeap(idCapacity, false);
+			case RADIX:
+				return new RadixHeap(idCapacity);
+			default:
+				return new IndexedPriorityHeap(idCapacity, false);
+			}
+		}
+	}
+
+	int size();
+
+	boolean isEmpty();
+
+	boolean contains(int id);
+
+	// Priority of a queued id.
+	int priorityOf(int id);
+
+	/* Queues id with priority pr. Throws IllegalArgumentException if id is
+	 * negative or already queued.
+	 */
+	void enQueue(int id, int pr);
+
+	/* Removes and returns the id that leaves first. Throws
+	 * NoSuchElementException if the queue is empty.
+	 */
+	int deQueue();
+
+	int peek();
+
+	int peekPriority();
+
+	// Sets the priority of a queued id.
+	void changePriority(int id, int pr);
+
+	/* Queues id with priority pr, or changes its priority if it is queued
+	 * already.
+	 */
+	default void enQueueOrChange(int id, int pr) {
+		if (contains(id)) {
+			changePriority(id, pr);
+		} else {
+			enQueue(id, pr);
+		}
+	}
+
+	// Removes id from the queue. Returns false if it was not queued.
+	boolean remove(int id);
+
+	void clear();
+}
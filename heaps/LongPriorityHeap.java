@@ -0,0 +1,190 @@
+/* Priority queue of int values with long priorities, for priorities such as
+ * timestamps that need 64 bits. Works exactly like PriorityHeap: parallel
+ * primitive arrays, doubling growth, iterative hole-based sifting.
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class LongPriorityHeap {
+	public static final int DEFAULT_CAPACITY = 16;
+
+	int[] input;
+	long[] priority;
+	// current size of the heap.
+	int size;
+	// true: highest priority first, false: lowest priority first
+	final boolean maxHeap;
+
+	public LongPriorityHeap() {
+		this(DEFAULT_CAPACITY, true);
+	}
+
+	public LongPriorityHeap(boolean maxHeap) {
+		this(DEFAULT_CAPACITY, maxHeap);
+	}
+
+	public LongPriorityHeap(int capacity, boolean maxHeap) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		input = new int[Math.max(1, capacity)];
+		priority = new long[input.length];
+		size = 0;
+		this.maxHeap = maxHeap;
+	}
+
+	/* Builds a max-heap from copies of the values and their priorities in O(n).
+	 * The ith index of pr is the priority of the ith value in in.
+	 */
+	public LongPriorityHeap(int[] in, long[] pr) {
+		this(in, pr, true);
+	}
+
+	public LongPriorityHeap(int[] in, long[] pr, boolean maxHeap) {
+		if (in.length != pr.length) {
+			throw new IllegalArgumentException("Got " + in.length + " values but " + pr.length + " priorities");
+		}
+		input = Arrays.copyOf(in, Math.max(1, in.length));
+		priority = Arrays.copyOf(pr, input.length);
+		size = in.length;
+		this.maxHeap = maxHeap;
+		createHeap();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isMaxHeap() {
+		return maxHeap;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	// true if priority a should leave the queue before priority b
+	private boolean before(long a, long b) {
+		return maxHeap ? a > b : a < b;
+	}
+
+	public void enQueue(int val, long pr) {
+		if (size == input.length) {
+			grow();
+		}
+		siftUp(size++, val, pr);
+	}
+
+	/* Removes and returns the value with the highest priority (lowest for a
+	 * min-heap). Throws NoSuchElementException if the queue is empty.
+	 */
+	public int deQueue() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		int ret = input[0];
+		size--;
+		if (size > 0) {
+			siftDown(0, input[size], priority[size]);
+		}
+		return ret;
+	}
+
+	// Value that deQueue would return next.
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return input[0];
+	}
+
+	// Priority of the value that deQueue would return next.
+	public long peekPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return priority[0];
+	}
+
+	private void grow() {
+		int capacity = input.length + Math.max(1, input.length);
+		if (capacity < 0) {
+			if (input.length == Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("Priority queue is full");
+			}
+			capacity = Integer.MAX_VALUE - 8;
+		}
+		input = Arrays.copyOf(input, capacity);
+		priority = Arrays.copyOf(priority, capacity);
+	}
+
+	/* Moves the hole at idx up until val with priority pr fits there. */
+	private void siftUp(int idx, int val, long pr) {
+		while (idx > 0) {
+			int parentIdx = (idx - 1) >>> 1;
+			if (!before(pr, priority[parentIdx])) {
+				break;
+			}
+			input[idx] = input[parentIdx];
+			priority[idx] = priority[parentIdx];
+			idx = parentIdx;
+		}
+		input[idx] = val;
+		priority[idx] = pr;
+	}
+
+	/* Moves the hole at idx down until val with priority pr fits there.
+	 * Takes O(log n) time.
+	 */
+	private void siftDown(int idx, int val, long pr) {
+		int half = size >>> 1; // nodes from here on are leaves
+		while (idx < half) {
+			int childIdx = 2 * idx + 1;
+			int rightChildIdx = childIdx + 1;
+			if (rightChildIdx < size && before(priority[rightChildIdx], priority[childIdx])) {
+				childIdx = rightChildIdx;
+			}
+			if (!before(priority[childIdx], pr)) {
+				break;
+			}
+			input[idx] = input[childIdx];
+			priority[idx] = priority[childIdx];
+			idx = childIdx;
+		}
+		input[idx] = val;
+		priority[idx] = pr;
+	}
+
+	public void heapify(int parentIdx) {
+		siftDown(parentIdx, input[parentIdx], priority[parentIdx]);
+	}
+
+	public void print() {
+		System.out.println();
+		for (int idx = 0; idx < size; idx++) {
+			System.out.print(input[idx] + " ");
+		}
+		System.out.println();
+
+		System.out.println();
+		for (int idx = 0; idx < size; idx++) {
+			System.out.print(priority[idx] + " ");
+		}
+		System.out.println();
+
+	}
+
+	public void createHeap() {
+
+		for (int idx = size / 2 - 1; idx >= 0; idx--) {
+			heapify(idx);
+		}
+	}
+
+}
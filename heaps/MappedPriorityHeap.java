@@ -0,0 +1,459 @@
+/* Priority queue of long ids with long priorities whose heap lives in a
+ * memory-mapped file instead of on the Java heap, for backlogs of billions of
+ * entries. Slots are addressed with long offsets and the file is mapped in
+ * segments of up to 1GB, so the queue is only limited by disk and address
+ * space. Each entry is 16 bytes (priority, then id).
+ * Layout: the heap is d-ary (d = 2, 4 or 8, default 4) with the root at slot
+ * d - 1, as in DAryHeap, so the d children of a node are one aligned block:
+ * one 64 byte cache line for d = 4. A sift then touches one line per level
+ * over log_d n levels, and the top levels, which every sift passes through,
+ * share the first few pages and stay resident.
+ * Crash safety: the first page of the file is a header holding the size and a
+ * small undo record for the operation in progress: its kind, the entry being
+ * sifted, where the hole currently is and, for deQueue, the entry being
+ * removed. Entries are moved into the hole before the hole index moves, so
+ * at any point every entry is either in the array or in the record. Opening a
+ * file after a crash puts the sifted entry back in the hole, rolls back an
+ * unfinished deQueue (the removed entry goes back in) or completes an
+ * unfinished enQueue, and then rebuilds the heap. This covers the process
+ * dying at any point, since its writes are in the page cache; against power
+ * loss only what sync() or close() forced to disk is safe.
+ * Batch mode: between beginBatch and endBatch, enQueue only appends. endBatch
+ * then either sifts up each new entry or, if there are many, rebuilds the
+ * whole heap bottom-up in one O(n) pass. A crash in batch mode loses nothing:
+ * the appended entries are counted in the header and heaped on reopen.
+ * Not thread-safe.
+ */
+package heaps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class MappedPriorityHeap implements Closeable {
+	public static final int DEFAULT_ARITY = 4;
+
+	private static final long MAGIC = 0x4d41505045444851L; // "MAPPEDHQ"
+	private static final int VERSION = 1;
+	static final int HEADER_BYTES = 4096;
+	static final int ENTRY_BYTES = 16;
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+	private static final long INITIAL_SLOTS = 1024;
+
+	// header offsets; package-private, like the states, so tests can stage a crash
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 8;
+	static final int ARITY_OFFSET = 12;
+	static final int MAX_HEAP_OFFSET = 16;
+	static final int STATE_OFFSET = 20;
+	static final int SIZE_OFFSET = 24;
+	static final int HEAP_SIZE_OFFSET = 32;
+	static final int OP_SIZE_OFFSET = 40;
+	static final int HOLE_OFFSET = 48;
+	static final int PENDING_PRIORITY_OFFSET = 56;
+	static final int PENDING_ID_OFFSET = 64;
+	static final int REMOVED_PRIORITY_OFFSET = 72;
+	static final int REMOVED_ID_OFFSET = 80;
+
+	// operation in progress, kept in the header
+	static final int IDLE = 0;
+	static final int ENQUEUING = 1;
+	static final int DEQUEUING = 2;
+	static final int REBUILDING = 3;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	// slots the mapped file has room for, including the arity - 1 unused ones
+	private long capacity;
+
+	final int arity;
+	private final int shift; // log2(arity)
+	private final long root; // slot of the root, arity - 1
+	// true: highest priority first, false: lowest priority first
+	final boolean maxHeap;
+	// entries in the file, and how many of them (a prefix) form a heap
+	long size;
+	long heapSize;
+	boolean batching;
+
+	private MappedPriorityHeap(FileChannel channel, int arity, boolean maxHeap, boolean created) throws IOException {
+		this.channel = channel;
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		header.order(ByteOrder.nativeOrder());
+		if (created) {
+			header.putInt(VERSION_OFFSET, VERSION);
+			header.putInt(ARITY_OFFSET, arity);
+			header.putInt(MAX_HEAP_OFFSET, maxHeap ? 1 : 0);
+			header.putInt(STATE_OFFSET, IDLE);
+			header.putLong(SIZE_OFFSET, 0);
+			header.putLong(HEAP_SIZE_OFFSET, 0);
+			VarHandle.releaseFence();
+			header.putLong(MAGIC_OFFSET, MAGIC);
+		} else {
+			if (header.getLong(MAGIC_OFFSET) != MAGIC) {
+				throw new IOException("Not a priority queue file");
+			}
+			if (header.getInt(VERSION_OFFSET) != VERSION) {
+				throw new IOException("Unsupported priority queue file version " + header.getInt(VERSION_OFFSET));
+			}
+			arity = header.getInt(ARITY_OFFSET);
+			maxHeap = header.getInt(MAX_HEAP_OFFSET) != 0;
+		}
+		this.arity = arity;
+		this.shift = Integer.numberOfTrailingZeros(arity);
+		this.root = arity - 1;
+		this.maxHeap = maxHeap;
+		size = header.getLong(SIZE_OFFSET);
+		heapSize = header.getLong(HEAP_SIZE_OFFSET);
+		long fileSlots = (channel.size() - HEADER_BYTES) / ENTRY_BYTES;
+		map(Math.max(INITIAL_SLOTS, Math.max(fileSlots, root + size + 1)));
+		recover();
+	}
+
+	/* Opens the queue stored in file, or creates an empty min-first 4-ary one
+	 * if the file does not exist.
+	 */
+	public static MappedPriorityHeap open(Path file) throws IOException {
+		return open(file, DEFAULT_ARITY, false);
+	}
+
+	/* Opens the queue stored in file, or creates an empty one with the given
+	 * arity (2, 4 or 8) and order if the file does not exist. An existing file
+	 * keeps the arity and order it was created with. Recovers from a crash
+	 * during the last session if there was one.
+	 */
+	public static MappedPriorityHeap open(Path file, int arity, boolean maxHeap) throws IOException {
+		if (arity != 2 && arity != 4 && arity != 8) {
+			throw new IllegalArgumentException("Arity must be 2, 4 or 8: " + arity);
+		}
+		boolean created = !Files.exists(file) || Files.size(file) == 0;
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			return new MappedPriorityHeap(channel, arity, maxHeap, created);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getArity() {
+		return arity;
+	}
+
+	public boolean isMaxHeap() {
+		return maxHeap;
+	}
+
+	public boolean isBatching() {
+		return batching;
+	}
+
+	/* Empties the queue. The file keeps its length. */
+	public void clear() {
+		batching = false;
+		setHeapSize(0);
+		setSize(0);
+	}
+
+	// true if priority a should leave the queue before priority b
+	private boolean before(long a, long b) {
+		return maxHeap ? a > b : a < b;
+	}
+
+	private long firstChild(long slot) {
+		return (slot - arity + 2) << shift;
+	}
+
+	private long parent(long slot) {
+		return (slot >>> shift) + arity - 2;
+	}
+
+	/* Queues id with priority pr. In batch mode it is only appended, and the
+	 * heap is fixed up by endBatch.
+	 */
+	public void enQueue(long id, long pr) throws IOException {
+		long slot = root + size;
+		if (slot == capacity) {
+			map(grownCapacity());
+		}
+		if (batching) {
+			writeEntry(slot, pr, id);
+			VarHandle.releaseFence();
+			setSize(size + 1);
+			return;
+		}
+		flushBatch();
+		beginOperation(ENQUEUING, slot, pr, id);
+		setSize(size + 1);
+		siftUp(slot, root, pr, id);
+		setHeapSize(size);
+		endOperation();
+	}
+
+	/* Removes and returns the id with the highest priority (lowest for a
+	 * min-heap). Throws NoSuchElementException if the queue is empty.
+	 */
+	public long deQueue() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		flushBatch();
+		long last = root + size - 1;
+		long ret = idAt(root);
+		header.putLong(REMOVED_PRIORITY_OFFSET, priorityAt(root));
+		header.putLong(REMOVED_ID_OFFSET, ret);
+		beginOperation(DEQUEUING, root, priorityAt(last), idAt(last));
+		setSize(size - 1);
+		setHeapSize(size);
+		if (size > 0) {
+			siftDown(root, header.getLong(PENDING_PRIORITY_OFFSET), header.getLong(PENDING_ID_OFFSET));
+		}
+		endOperation();
+		return ret;
+	}
+
+	public long peek() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		flushBatch();
+		return idAt(root);
+	}
+
+	public long peekPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		flushBatch();
+		return priorityAt(root);
+	}
+
+	// From here on enQueue only appends, until endBatch.
+	public void beginBatch() {
+		batching = true;
+	}
+
+	/* Heaps everything appended since beginBatch and leaves batch mode. peek
+	 * and deQueue do the same heaping without leaving batch mode.
+	 */
+	public void endBatch() {
+		flushBatch();
+		batching = false;
+	}
+
+	/* Sifts the appended entries up one by one, or rebuilds the whole heap
+	 * when that is cheaper: k sift-ups cost about k log n, a rebuild about n.
+	 */
+	private void flushBatch() {
+		long appended = size - heapSize;
+		if (appended == 0) {
+			return;
+		}
+		long levels = 64 - Long.numberOfLeadingZeros(size);
+		if (appended * levels >= size) {
+			createHeap();
+			return;
+		}
+		for (long slot = root + heapSize; slot < root + size; slot++) {
+			long pr = priorityAt(slot);
+			long id = idAt(slot);
+			beginOperation(REBUILDING, slot, pr, id);
+			siftUp(slot, root, pr, id);
+			setHeapSize(slot - root + 1);
+			endOperation();
+		}
+	}
+
+	/* Floyd's bottom-up construction over every entry, in O(n). */
+	private void createHeap() {
+		if (size > 1) {
+			for (long slot = parent(root + size - 1); slot >= root; slot--) {
+				long pr = priorityAt(slot);
+				long id = idAt(slot);
+				beginOperation(REBUILDING, slot, pr, id);
+				siftDown(slot, pr, id);
+				endOperation();
+			}
+		}
+		setHeapSize(size);
+	}
+
+	/* Moves the hole at slot up, but not past top, until id with priority pr
+	 * fits there. Every entry is copied into the hole before the hole moves.
+	 */
+	private void siftUp(long slot, long top, long pr, long id) {
+		while (slot > top) {
+			long parentSlot = parent(slot);
+			long parentPriority = priorityAt(parentSlot);
+			if (!before(pr, parentPriority)) {
+				break;
+			}
+			writeEntry(slot, parentPriority, idAt(parentSlot));
+			moveHole(parentSlot);
+			slot = parentSlot;
+		}
+		writeEntry(slot, pr, id);
+	}
+
+	/* Moves the hole at slot down until id with priority pr fits there. */
+	private void siftDown(long slot, long pr, long id) {
+		long end = root + size;
+		long lastParent = parent(end - 1); // slots past this are leaves
+		while (slot <= lastParent) {
+			long childSlot = firstChild(slot);
+			long best = childSlot;
+			long bestPriority = priorityAt(childSlot);
+			long lastChild = Math.min(childSlot + arity, end);
+			for (long c = childSlot + 1; c < lastChild; c++) {
+				long childPriority = priorityAt(c);
+				if (before(childPriority, bestPriority)) {
+					best = c;
+					bestPriority = childPriority;
+				}
+			}
+			if (!before(bestPriority, pr)) {
+				break;
+			}
+			writeEntry(slot, bestPriority, idAt(best));
+			moveHole(best);
+			slot = best;
+		}
+		writeEntry(slot, pr, id);
+	}
+
+	/* Records that the entry pr, id is out of the array while it is sifted
+	 * from hole, on behalf of operation state.
+	 */
+	private void beginOperation(int state, long hole, long pr, long id) {
+		header.putLong(PENDING_PRIORITY_OFFSET, pr);
+		header.putLong(PENDING_ID_OFFSET, id);
+		header.putLong(HOLE_OFFSET, hole);
+		header.putLong(OP_SIZE_OFFSET, size);
+		VarHandle.releaseFence();
+		header.putInt(STATE_OFFSET, state);
+		VarHandle.releaseFence();
+	}
+
+	private void moveHole(long hole) {
+		VarHandle.releaseFence();
+		header.putLong(HOLE_OFFSET, hole);
+		VarHandle.releaseFence();
+	}
+
+	private void endOperation() {
+		VarHandle.releaseFence();
+		header.putInt(STATE_OFFSET, IDLE);
+	}
+
+	private void setSize(long newSize) {
+		size = newSize;
+		header.putLong(SIZE_OFFSET, newSize);
+	}
+
+	private void setHeapSize(long newSize) {
+		heapSize = newSize;
+		header.putLong(HEAP_SIZE_OFFSET, newSize);
+	}
+
+	/* Undoes or finishes the operation a crash interrupted and heaps
+	 * whatever is not a heap yet. See the class comment.
+	 */
+	private void recover() {
+		int state = header.getInt(STATE_OFFSET);
+		if (state != IDLE) {
+			long hole = header.getLong(HOLE_OFFSET);
+			long opSize = header.getLong(OP_SIZE_OFFSET);
+			writeEntry(hole, header.getLong(PENDING_PRIORITY_OFFSET), header.getLong(PENDING_ID_OFFSET));
+			if (state == ENQUEUING) {
+				setSize(opSize + 1);
+			} else if (state == DEQUEUING) {
+				writeEntry(root + opSize - 1, header.getLong(REMOVED_PRIORITY_OFFSET),
+						header.getLong(REMOVED_ID_OFFSET));
+				setSize(opSize);
+			}
+			VarHandle.releaseFence();
+			// the interrupted sift may have left the order broken anywhere on its path
+			setHeapSize(0);
+			endOperation();
+		}
+		if (heapSize < size) {
+			createHeap();
+		}
+	}
+
+	private long grownCapacity() {
+		return capacity + Math.max(INITIAL_SLOTS, Math.min(capacity, SEGMENT_BYTES / ENTRY_BYTES));
+	}
+
+	/* Maps room for slots entries, growing the file if needed. Segments are
+	 * SEGMENT_BYTES long except the last, which is remapped as it grows.
+	 */
+	private void map(long slots) throws IOException {
+		long bytes = slots * ENTRY_BYTES;
+		int count = (int) ((bytes + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT);
+		MappedByteBuffer[] mapped = Arrays.copyOf(segments, count);
+		for (int idx = Math.max(0, segments.length - 1); idx < count; idx++) {
+			long offset = (long) idx << SEGMENT_SHIFT;
+			long length = Math.min(SEGMENT_BYTES, bytes - offset);
+			if (idx < segments.length && segments[idx].capacity() == length) {
+				continue;
+			}
+			mapped[idx] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + offset, length);
+			mapped[idx].order(ByteOrder.nativeOrder());
+		}
+		segments = mapped;
+		capacity = slots;
+	}
+
+	private long priorityAt(long slot) {
+		long offset = slot * ENTRY_BYTES;
+		return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & (SEGMENT_BYTES - 1)));
+	}
+
+	private long idAt(long slot) {
+		long offset = slot * ENTRY_BYTES + 8;
+		return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & (SEGMENT_BYTES - 1)));
+	}
+
+	private void writeEntry(long slot, long pr, long id) {
+		long offset = slot * ENTRY_BYTES;
+		MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+		int position = (int) (offset & (SEGMENT_BYTES - 1));
+		segment.putLong(position, pr);
+		segment.putLong(position + 8, id);
+	}
+
+	/* Forces the entries and then the header to disk. */
+	public void sync() {
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+		header.force();
+	}
+
+	/* Heaps any batch, forces everything to disk and closes the file. */
+	public void close() throws IOException {
+		endBatch();
+		sync();
+		channel.close();
+	}
+}
@@ -0,0 +1,285 @@
+/* Indexed pairing heap of int ids with int priorities.
+ * A pairing heap is one multiway tree where every node leaves before its
+ * children. Two trees meld in O(1) by hanging the one whose root leaves later
+ * under the other root, and that is all enQueue and decrease-key do: enQueue
+ * melds a one-node tree, decrease-key cuts the node's subtree out and melds it
+ * back in. deQueue pays for this by melding the root's children in two passes
+ * (pairs left to right, then the pairs right to left), O(log n) amortized.
+ * The tree is stored in arrays indexed by id (leftmost child, next sibling and
+ * previous sibling, or parent for a leftmost child), so, as in
+ * IndexedPriorityHeap, ids should be dense non-negative ints, and nothing is
+ * allocated per operation. The price is that meld(PairingHeap) has to copy
+ * the other heap's links over, O(largest id), although its trees link in O(1).
+ * URL: https://en.wikipedia.org/wiki/Pairing_heap
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class PairingHeap implements IntPriorityQueue {
+	private static final int NONE = -1;
+	// prev of an id that is not queued
+	private static final int ABSENT = -2;
+
+	// id -> its priority and links; the root has no prev (NONE)
+	int[] priority;
+	int[] child;
+	int[] sibling;
+	int[] prev;
+	int root = NONE;
+	int size;
+	// true: highest priority first, false: lowest priority first
+	final boolean maxHeap;
+
+	public PairingHeap(boolean maxHeap) {
+		this(PriorityHeap.DEFAULT_CAPACITY, maxHeap);
+	}
+
+	/* idCapacity is the expected number of ids; the arrays grow past it if
+	 * needed.
+	 */
+	public PairingHeap(int idCapacity, boolean maxHeap) {
+		if (idCapacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + idCapacity);
+		}
+		int capacity = Math.max(1, idCapacity);
+		priority = new int[capacity];
+		child = new int[capacity];
+		sibling = new int[capacity];
+		prev = new int[capacity];
+		Arrays.fill(prev, ABSENT);
+		size = 0;
+		this.maxHeap = maxHeap;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int id) {
+		return id >= 0 && id < prev.length && prev[id] != ABSENT;
+	}
+
+	public int priorityOf(int id) {
+		checkQueued(id);
+		return priority[id];
+	}
+
+	// Takes O(largest id) time.
+	public void clear() {
+		Arrays.fill(prev, ABSENT);
+		root = NONE;
+		size = 0;
+	}
+
+	// true if priority a should leave the queue before priority b
+	private boolean before(int a, int b) {
+		return maxHeap ? a > b : a < b;
+	}
+
+	public void enQueue(int id, int pr) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Negative id: " + id);
+		}
+		if (id >= prev.length) {
+			grow(id);
+		}
+		if (prev[id] != ABSENT) {
+			throw new IllegalArgumentException("Id " + id + " is already queued");
+		}
+		priority[id] = pr;
+		child[id] = NONE;
+		sibling[id] = NONE;
+		prev[id] = NONE;
+		root = root == NONE ? id : link(root, id);
+		size++;
+	}
+
+	public int deQueue() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		int ret = root;
+		root = mergePairs(child[ret]);
+		prev[ret] = ABSENT;
+		size--;
+		return ret;
+	}
+
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return root;
+	}
+
+	public int peekPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return priority[root];
+	}
+
+	/* Moving an id towards the front (decrease-key for a min-heap) cuts its
+	 * subtree out and melds it with the root, O(1) plus the amortized cost of
+	 * the deQueue that later sorts it out. Moving it back is a remove and an
+	 * enQueue.
+	 */
+	public void changePriority(int id, int pr) {
+		checkQueued(id);
+		if (!before(priority[id], pr)) {
+			priority[id] = pr;
+			if (id != root) {
+				cut(id);
+				root = link(root, id);
+			}
+		} else {
+			remove(id);
+			enQueue(id, pr);
+		}
+	}
+
+	public boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		if (id == root) {
+			deQueue();
+			return true;
+		}
+		cut(id);
+		int subtree = mergePairs(child[id]);
+		if (subtree != NONE) {
+			root = link(root, subtree);
+		}
+		prev[id] = ABSENT;
+		size--;
+		return true;
+	}
+
+	/* Moves every id of other into this heap and empties other. The trees
+	 * meld in O(1), but taking over other's ids costs a pass over them, O(n)
+	 * for n the largest id of other. Throws IllegalArgumentException if the
+	 * heaps are ordered differently or an id is queued in both.
+	 */
+	public void meld(PairingHeap other) {
+		if (other == this || other.maxHeap != maxHeap) {
+			throw new IllegalArgumentException("Can only meld a different heap with the same order");
+		}
+		for (int id = 0; id < other.prev.length; id++) {
+			if (other.prev[id] != ABSENT && contains(id)) {
+				throw new IllegalArgumentException("Id " + id + " is queued in both heaps");
+			}
+		}
+		if (other.prev.length > prev.length) {
+			grow(other.prev.length - 1);
+		}
+		for (int id = 0; id < other.prev.length; id++) {
+			if (other.prev[id] != ABSENT) {
+				priority[id] = other.priority[id];
+				child[id] = other.child[id];
+				sibling[id] = other.sibling[id];
+				prev[id] = other.prev[id];
+			}
+		}
+		if (other.root != NONE) {
+			root = root == NONE ? other.root : link(root, other.root);
+		}
+		size += other.size;
+		other.clear();
+	}
+
+	/* Melds the trees rooted at a and b, neither of which has a parent or
+	 * siblings, and returns the new root.
+	 */
+	private int link(int a, int b) {
+		if (before(priority[b], priority[a])) {
+			int temp = a;
+			a = b;
+			b = temp;
+		}
+		int first = child[a];
+		sibling[b] = first;
+		if (first != NONE) {
+			prev[first] = b;
+		}
+		prev[b] = a;
+		child[a] = b;
+		return a;
+	}
+
+	// Unlinks the subtree of id, which is not the root, from its parent.
+	private void cut(int id) {
+		int before = prev[id];
+		int after = sibling[id];
+		if (child[before] == id) {
+			child[before] = after;
+		} else {
+			sibling[before] = after;
+		}
+		if (after != NONE) {
+			prev[after] = before;
+		}
+		sibling[id] = NONE;
+		prev[id] = NONE;
+	}
+
+	/* Melds the list of siblings starting at first into one tree and returns
+	 * its root, or NONE for an empty list. The first pass melds neighbours in
+	 * pairs, keeping the results in a list threaded through sibling; the
+	 * second melds that list into one tree.
+	 */
+	private int mergePairs(int first) {
+		int pairs = NONE;
+		int next = first;
+		while (next != NONE) {
+			int a = next;
+			int b = sibling[a];
+			next = b == NONE ? NONE : sibling[b];
+			sibling[a] = NONE;
+			prev[a] = NONE;
+			if (b != NONE) {
+				sibling[b] = NONE;
+				prev[b] = NONE;
+				a = link(a, b);
+			}
+			sibling[a] = pairs;
+			pairs = a;
+		}
+		if (pairs == NONE) {
+			return NONE;
+		}
+		int tree = pairs;
+		pairs = sibling[tree];
+		sibling[tree] = NONE;
+		while (pairs != NONE) {
+			int pair = pairs;
+			pairs = sibling[pair];
+			sibling[pair] = NONE;
+			tree = link(tree, pair);
+		}
+		return tree;
+	}
+
+	private void checkQueued(int id) {
+		if (!contains(id)) {
+			throw new NoSuchElementException("Id " + id + " is not queued");
+		}
+	}
+
+	private void grow(int id) {
+		int oldLength = prev.length;
+		long capacity = Math.max((long) id + 1, 2L * oldLength);
+		int length = (int) Math.min(capacity, Integer.MAX_VALUE - 8);
+		priority = Arrays.copyOf(priority, length);
+		child = Arrays.copyOf(child, length);
+		sibling = Arrays.copyOf(sibling, length);
+		prev = Arrays.copyOf(prev, length);
+		Arrays.fill(prev, oldLength, length, ABSENT);
+	}
+}
@@ -1,75 +1,315 @@
+/* Priority queue of int values with int priorities, kept in a binary heap.
+ * Values and priorities live in two parallel primitive arrays, so enQueue and
+ * deQueue never box or allocate; the arrays only grow (doubling) when full,
+ * which is amortized O(1) per enQueue.
+ * A max-heap dequeues the highest priority first, a min-heap the lowest.
+ * Sifting is iterative and moves a hole instead of swapping, so each level
+ * costs one write per array instead of three.
+ * URL: https://www.geeksforgeeks.org/priority-queue-using-heap/
+ */
 package heaps;
 
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
 public class PriorityHeap {
+	public static final int DEFAULT_CAPACITY = 16;
+	// addAll re-heapifies batches of at least size / 2^HEAPIFY_SHIFT and HEAPIFY_MIN values (see PriorityHeapBatchAnalysis)
+	static final int HEAPIFY_SHIFT = 3;
+	static final int HEAPIFY_MIN = 64;
+	// pollBatch sorts for batches of at least size / 2^SORT_SHIFT + SORT_MIN
+	static final int SORT_SHIFT = 1;
+	static final int SORT_MIN = 64;
+
 	int[] input;
+	int[] priority;
 	// current size of the heap.
 	int size;
-	// maximum size that can be stored in the heap
-	int capacity;
-	int[] priority;
+	// packed entries for pollBatchSort, kept between calls and grown with the heap
+	long[] sortScratch;
+	// true: highest priority first, false: lowest priority first
+	final boolean maxHeap;
+
+	public PriorityHeap() {
+		this(DEFAULT_CAPACITY, true);
+	}
+
+	public PriorityHeap(boolean maxHeap) {
+		this(DEFAULT_CAPACITY, maxHeap);
+	}
+
+	public PriorityHeap(int capacity, boolean maxHeap) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		input = new int[Math.max(1, capacity)];
+		priority = new int[input.length];
+		size = 0;
+		this.maxHeap = maxHeap;
+	}
 
+	/* Builds a max-heap from copies of the values and their priorities in O(n).
+	 * The ith index of pr is the priority of the ith value in in.
+	 */
 	public PriorityHeap(int[] in, int[] pr) {
-		input = in;
-		priority = pr;
-		size = input.length;
-		capacity = size;
+		this(in, pr, true);
 	}
 
-	public int getMax() {
-		int val = Integer.MIN_VALUE;
-		if (size != 0) {
-			val = input[0];
-			int p = priority[0];
-			input[0] = input[size-1];
-			priority[0] = priority[size-1];
-			size--;
-			heapify(0);
+	public PriorityHeap(int[] in, int[] pr, boolean maxHeap) {
+		if (in.length != pr.length) {
+			throw new IllegalArgumentException("Got " + in.length + " values but " + pr.length + " priorities");
 		}
-		return val;
+		input = Arrays.copyOf(in, Math.max(1, in.length));
+		priority = Arrays.copyOf(pr, input.length);
+		size = in.length;
+		this.maxHeap = maxHeap;
+		createHeap();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isMaxHeap() {
+		return maxHeap;
+	}
+
+	public void clear() {
+		size = 0;
 	}
 
-	// Swap the values and the priority for the heap.
-	private void swap(int x, int y) {
-		int temp = input[x];
-		int p = priority[x];
-		input[x] = input[y];
-		priority[x] = priority[y];
-		input[y] = temp;
-		priority[y] = p;
+	// true if priority a should leave the queue before priority b
+	private boolean before(int a, int b) {
+		return maxHeap ? a > b : a < b;
 	}
 
-	public int enQueue(int val) {
-		int ret = Integer.MIN_VALUE;
-		if (size != capacity) {
-			
+	public void enQueue(int val, int pr) {
+		if (size == input.length) {
+			grow();
 		}
-		return ret;
+		siftUp(size++, val, pr);
 	}
 
+	/* Removes and returns the value with the highest priority (lowest for a
+	 * min-heap). Throws NoSuchElementException if the queue is empty.
+	 */
 	public int deQueue() {
-		int ret = Integer.MIN_VALUE;
-		if (size != 0) {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		int ret = input[0];
+		size--;
+		if (size > 0) {
+			siftDown(0, input[size], priority[size]);
+		}
+		return ret;
+	}
 
-			ret = getMax();
+	/* Replaces the value at the top with val and priority pr and returns the old
+	 * top. One sift-down, so cheaper than a deQueue followed by an enQueue.
+	 * Throws NoSuchElementException if the queue is empty.
+	 */
+	public int replaceTop(int val, int pr) {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
 		}
+		int ret = input[0];
+		siftDown(0, val, pr);
 		return ret;
 	}
-	public void heapify(int parentIdx) {
-		int leftChildIdx = 2 * parentIdx + 1;
-		int rightChildIdx = 2 * parentIdx + 2;
-		int largestIdx = parentIdx;
 
-		if(leftChildIdx < size && priority[leftChildIdx] > priority[parentIdx]) {
-			largestIdx = leftChildIdx;
+	/* Queues values[i] with priority priorities[i] for every i. A small batch
+	 * is sifted up one value at a time, O(k log n) for k values in the worst
+	 * case but O(k) for random priorities. A large one is appended and only
+	 * the ancestors of the new slots are re-heapified, bottom-up one level at
+	 * a time: O(k + log n log k), and a full O(n) rebuild when the heap was
+	 * empty. Re-heapifying is 10-25% slower for random priorities but several
+	 * times faster when the batch belongs near the top, so it is only picked
+	 * once the batch is at least an eighth of the heap, where both are linear
+	 * in k and the worst case is what is left to win.
+	 */
+	public void addAll(int[] values, int[] priorities) {
+		if (values.length != priorities.length) {
+			throw new IllegalArgumentException("Got " + values.length + " values but " + priorities.length + " priorities");
+		}
+		if (picksHeapify(values.length, size)) {
+			addAllHeapify(values, priorities);
+		} else {
+			addAllSiftUp(values, priorities);
+		}
+	}
+
+	static boolean picksHeapify(int count, int size) {
+		return count >= HEAPIFY_MIN && count >= (size >>> HEAPIFY_SHIFT);
+	}
+
+	void addAllSiftUp(int[] values, int[] priorities) {
+		ensureCapacity(size + values.length);
+		for (int idx = 0; idx < values.length; idx++) {
+			siftUp(size++, values[idx], priorities[idx]);
 		}
-		if (rightChildIdx < size && priority[rightChildIdx] > priority[largestIdx]) {
-			largestIdx = rightChildIdx;
+	}
+
+	void addAllHeapify(int[] values, int[] priorities) {
+		int count = values.length;
+		if (count == 0) {
+			return;
+		}
+		ensureCapacity(size + count);
+		System.arraycopy(values, 0, input, size, count);
+		System.arraycopy(priorities, 0, priority, size, count);
+		int lo = size;
+		int hi = size + count - 1;
+		size += count;
+		// every ancestor of a new slot, deepest first; a range of slots has a range of parents
+		while (hi > 0) {
+			lo = (Math.max(lo, 1) - 1) >>> 1;
+			hi = (hi - 1) >>> 1;
+			for (int idx = hi; idx >= lo; idx--) {
+				heapify(idx);
+			}
 		}
+	}
 
-		if (largestIdx != parentIdx) {
-			swap(largestIdx, parentIdx);
-			heapify(largestIdx);
+	/* Removes the min(k, size) values that deQueue would return next and
+	 * stores them in out in that order. Returns how many were removed. A small
+	 * batch is dequeued one value at a time, O(k log n). A large one sorts the
+	 * whole heap at once, which leaves the rest in sorted order and so still a
+	 * heap; that takes O(n log n) time and a long[n] that is kept for the
+	 * next large batch.
+	 */
+	public int pollBatch(int k, int[] out) {
+		if (k < 0) {
+			throw new IllegalArgumentException("Negative batch size: " + k);
+		}
+		int count = Math.min(k, size);
+		if (out.length < count) {
+			throw new IllegalArgumentException("Output holds " + out.length + " values but " + count + " are due");
 		}
+		if (picksSort(count, size)) {
+			pollBatchSort(count, out);
+		} else {
+			pollBatchDeQueue(count, out);
+		}
+		return count;
+	}
+
+	static boolean picksSort(int count, int size) {
+		return count >= (size >>> SORT_SHIFT) + SORT_MIN;
+	}
+
+	void pollBatchDeQueue(int count, int[] out) {
+		for (int idx = 0; idx < count; idx++) {
+			out[idx] = deQueue();
+		}
+	}
+
+	// Sorts priority (high 32 bits) and value (low 32 bits) packed in a long.
+	void pollBatchSort(int count, int[] out) {
+		if (sortScratch == null || sortScratch.length < size) {
+			sortScratch = new long[input.length];
+		}
+		long[] entries = sortScratch;
+		for (int idx = 0; idx < size; idx++) {
+			entries[idx] = ((long) priority[idx] << 32) | (input[idx] & 0xffffffffL);
+		}
+		Arrays.sort(entries, 0, size);
+		int remaining = size - count;
+		for (int idx = 0; idx < size; idx++) {
+			// a max-heap leaves from the end of the sorted order
+			long entry = entries[maxHeap ? size - 1 - idx : idx];
+			if (idx < count) {
+				out[idx] = (int) entry;
+			} else {
+				input[idx - count] = (int) entry;
+				priority[idx - count] = (int) (entry >> 32);
+			}
+		}
+		size = remaining;
+	}
+
+	// Value that deQueue would return next.
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return input[0];
+	}
+
+	// Priority of the value that deQueue would return next.
+	public int peekPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		return priority[0];
+	}
+
+	private void grow() {
+		int capacity = input.length + Math.max(1, input.length);
+		if (capacity < 0) {
+			if (input.length == Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("Priority queue is full");
+			}
+			capacity = Integer.MAX_VALUE - 8;
+		}
+		input = Arrays.copyOf(input, capacity);
+		priority = Arrays.copyOf(priority, capacity);
+	}
+
+	private void ensureCapacity(int needed) {
+		if (needed < 0 || needed > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Priority queue is full");
+		}
+		if (needed > input.length) {
+			int capacity = (int) Math.min(Math.max((long) needed, 2L * input.length), Integer.MAX_VALUE - 8);
+			input = Arrays.copyOf(input, capacity);
+			priority = Arrays.copyOf(priority, capacity);
+		}
+	}
+
+	/* Moves the hole at idx up until val with priority pr fits there. */
+	private void siftUp(int idx, int val, int pr) {
+		while (idx > 0) {
+			int parentIdx = (idx - 1) >>> 1;
+			if (!before(pr, priority[parentIdx])) {
+				break;
+			}
+			input[idx] = input[parentIdx];
+			priority[idx] = priority[parentIdx];
+			idx = parentIdx;
+		}
+		input[idx] = val;
+		priority[idx] = pr;
+	}
+
+	/* Moves the hole at idx down until val with priority pr fits there.
+	 * Takes O(log n) time.
+	 */
+	private void siftDown(int idx, int val, int pr) {
+		int half = size >>> 1; // nodes from here on are leaves
+		while (idx < half) {
+			int childIdx = 2 * idx + 1;
+			int rightChildIdx = childIdx + 1;
+			if (rightChildIdx < size && before(priority[rightChildIdx], priority[childIdx])) {
+				childIdx = rightChildIdx;
+			}
+			if (!before(priority[childIdx], pr)) {
+				break;
+			}
+			input[idx] = input[childIdx];
+			priority[idx] = priority[childIdx];
+			idx = childIdx;
+		}
+		input[idx] = val;
+		priority[idx] = pr;
+	}
+
+	public void heapify(int parentIdx) {
+		siftDown(parentIdx, input[parentIdx], priority[parentIdx]);
 	}
 
 	public void print() {
@@ -89,9 +329,9 @@ public class PriorityHeap {
 
 	public void createHeap() {
 
-		for (int idx = size / 2; idx >= 0; idx--) {
+		for (int idx = size / 2 - 1; idx >= 0; idx--) {
 			heapify(idx);
 		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+/* Throughput of PriorityHeap and LongPriorityHeap against
+ * java.util.PriorityQueue<Integer> for a scheduler-like workload: the queue is
+ * filled to a steady size, then every operation enqueues one value and
+ * dequeues one. Prints operations per second as CSV.
+ * Usage: java heaps.PriorityHeapAnalysis [queueSize] [operations]
+ */
+package heaps;
+
+import java.util.Random;
+
+public class PriorityHeapAnalysis {
+
+	private static long checksum;
+
+	private static int[] getPriorities(int count) {
+		Random rm = new Random(1);
+		int[] priorities = new int[count];
+		for (int idx = 0; idx < count; idx++) {
+			priorities[idx] = rm.nextInt();
+		}
+		return priorities;
+	}
+
+	private static double primitive(int queueSize, int[] priorities) {
+		PriorityHeap heap = new PriorityHeap(false);
+		for (int idx = 0; idx < queueSize; idx++) {
+			heap.enQueue(idx, priorities[idx]);
+		}
+		long start = System.nanoTime();
+		for (int idx = queueSize; idx < priorities.length; idx++) {
+			heap.enQueue(idx, priorities[idx]);
+			checksum += heap.deQueue();
+		}
+		return 2.0 * (priorities.length - queueSize) * 1e9 / (System.nanoTime() - start);
+	}
+
+	private static double primitiveLong(int queueSize, int[] priorities) {
+		LongPriorityHeap heap = new LongPriorityHeap(false);
+		for (int idx = 0; idx < queueSize; idx++) {
+			heap.enQueue(idx, priorities[idx]);
+		}
+		long start = System.nanoTime();
+		for (int idx = queueSize; idx < priorities.length; idx++) {
+			heap.enQueue(idx, priorities[idx]);
+			checksum += heap.deQueue();
+		}
+		return 2.0 * (priorities.length - queueSize) * 1e9 / (System.nanoTime() - start);
+	}
+
+	private static double boxed(int queueSize, int[] priorities) {
+		// values are indexes into priorities, as a scheduler would queue task ids
+		java.util.PriorityQueue<Integer> queue = new java.util.PriorityQueue<>(
+				(a, b) -> Integer.compare(priorities[a], priorities[b]));
+		for (int idx = 0; idx < queueSize; idx++) {
+			queue.add(idx);
+		}
+		long start = System.nanoTime();
+		for (int idx = queueSize; idx < priorities.length; idx++) {
+			queue.add(idx);
+			checksum += queue.poll();
+		}
+		return 2.0 * (priorities.length - queueSize) * 1e9 / (System.nanoTime() - start);
+	}
+
+	public static void main(String[] args) {
+		int queueSize = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+		int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 23;
+		int[] priorities = getPriorities(queueSize + operations);
+		System.out.println("===================Analysis Start===================");
+		System.out.println("Queue,QueueSize,OpsPerSecond");
+		for (int round = 0; round < 2; round++) { // the first round warms up
+			double heap = primitive(queueSize, priorities);
+			double longHeap = primitiveLong(queueSize, priorities);
+			double queue = boxed(queueSize, priorities);
+			if (round == 1) {
+				System.out.printf("PriorityHeap,%d,%.0f%n", queueSize, heap);
+				System.out.printf("LongPriorityHeap,%d,%.0f%n", queueSize, longHeap);
+				System.out.printf("java.util.PriorityQueue,%d,%.0f%n", queueSize, queue);
+			}
+		}
+		System.out.println("===================Analysis Complete================");
+		System.err.println("checksum " + checksum);
+	}
+}
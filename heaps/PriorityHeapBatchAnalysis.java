@@ -0,0 +1,141 @@
+/* Finds the batch size from which PriorityHeap.addAll and pollBatch should
+ * switch strategy. For heaps of n random priorities and batches of k = 2^j
+ * values, drawn at random or all ahead of the heap, it times addAll by sifting
+ * up one value at a time against appending and re-heapifying the ancestors;
+ * n shrinks down to an empty heap, since what matters is k relative to n.
+ * For the largest heap it then times pollBatch by dequeuing one value at a
+ * time against sorting the heap. Prints nanoseconds per batched value as CSV,
+ * together with the strategy addAll and pollBatch pick for that k and n; the
+ * crossover is where the two timings swap. Every run is done once to warm up.
+ * Usage: java heaps.PriorityHeapBatchAnalysis [heapSize] [repeats]
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class PriorityHeapBatchAnalysis {
+
+	private static long checksum;
+
+	private static int[] getArray(int size, Random rm) {
+		int[] input = new int[size];
+		for (int idx = 0; idx < size; idx++) {
+			input[idx] = rm.nextInt();
+		}
+		return input;
+	}
+
+	// A heap of values with room for extra more, so no batch has to grow it.
+	private static PriorityHeap filledHeap(int[] values, int extra) {
+		PriorityHeap heap = new PriorityHeap(values.length + extra, false);
+		heap.addAllHeapify(values, values);
+		return heap;
+	}
+
+	private static double addAll(int[] heapValues, int[] batch, boolean heapify, int repeats) {
+		long elapsed = 0;
+		for (int round = 0; round < repeats; round++) {
+			PriorityHeap heap = filledHeap(heapValues, batch.length);
+			long start = System.nanoTime();
+			if (heapify) {
+				heap.addAllHeapify(batch, batch);
+			} else {
+				heap.addAllSiftUp(batch, batch);
+			}
+			elapsed += System.nanoTime() - start;
+			checksum += heap.peek();
+		}
+		return (double) elapsed / repeats / batch.length;
+	}
+
+	private static double pollBatch(int[] heapValues, int k, boolean sort, int repeats) {
+		int[] out = new int[k];
+		long elapsed = 0;
+		for (int round = 0; round < repeats; round++) {
+			PriorityHeap heap = filledHeap(heapValues, 0);
+			long start = System.nanoTime();
+			if (sort) {
+				heap.pollBatchSort(k, out);
+			} else {
+				heap.pollBatchDeQueue(k, out);
+			}
+			elapsed += System.nanoTime() - start;
+			checksum += out[k - 1];
+		}
+		return (double) elapsed / repeats / k;
+	}
+
+	/* random: batch priorities drawn like the heap's, so most sift up O(1)
+	 * levels. front: every batch priority leaves before the whole heap, in
+	 * reverse order, so each one sifts up to the root (the worst case).
+	 */
+	private static int[] getBatch(String distribution, int k, Random rm) {
+		if (distribution.equals("random")) {
+			return getArray(k, rm);
+		}
+		int[] batch = new int[k];
+		for (int idx = 0; idx < k; idx++) {
+			batch[idx] = Integer.MIN_VALUE + k - idx;
+		}
+		return batch;
+	}
+
+	// heap sizes shrink by 2^HEAP_SHIFT per step, down to an empty heap
+	private static final int HEAP_SHIFT = 3;
+
+	private static void measure(int[] heapValues, Random rm, int repeats, boolean print) {
+		if (print) {
+			System.out.println("Distribution,HeapSize,Batch,AddSiftUpNs,AddHeapifyNs,AddAllPicks");
+		}
+		for (String distribution : new String[] {"random", "front"}) {
+			for (int n = heapValues.length; ; n >>>= HEAP_SHIFT) {
+				measureAddAll(Arrays.copyOf(heapValues, n), heapValues.length, distribution, rm, repeats, print);
+				if (n == 0) {
+					break;
+				}
+			}
+		}
+		if (print) {
+			System.out.println("HeapSize,Batch,PollDeQueueNs,PollSortNs,PollBatchPicks");
+		}
+		measurePollBatch(heapValues, repeats, print);
+	}
+
+	private static void measureAddAll(int[] heapValues, int maxBatch, String distribution, Random rm, int repeats, boolean print) {
+		int n = heapValues.length;
+		for (int k = maxBatch; k >= 1; k /= 2) {
+			int[] batch = getBatch(distribution, k, rm);
+			double siftUp = addAll(heapValues, batch, false, repeats);
+			double heapify = addAll(heapValues, batch, true, repeats);
+			if (print) {
+				System.out.printf("%s,%d,%d,%.1f,%.1f,%s%n", distribution, n, k, siftUp, heapify,
+						PriorityHeap.picksHeapify(k, n) ? "heapify" : "siftUp");
+			}
+		}
+	}
+
+	private static void measurePollBatch(int[] heapValues, int repeats, boolean print) {
+		int n = heapValues.length;
+		for (int k = n; k >= 1; k /= 2) {
+			double deQueue = pollBatch(heapValues, k, false, repeats);
+			double sort = pollBatch(heapValues, k, true, repeats);
+			if (print) {
+				System.out.printf("%d,%d,%.1f,%.1f,%s%n", n, k, deQueue, sort,
+						PriorityHeap.picksSort(k, n) ? "sort" : "deQueue");
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+		int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		Random rm = new Random(1);
+		int[] heapValues = getArray(n, rm);
+		System.out.println("===================Analysis Start===================");
+		measure(heapValues, rm, 1, false);
+		measure(heapValues, rm, repeats, true);
+		System.out.println("===================Analysis Complete================");
+		System.err.println("checksum " + checksum);
+	}
+}
@@ -49,7 +49,6 @@ public class PriorityQueue {
 		print("Priority", priority);
 
 		PriorityHeap pHeap = new PriorityHeap(input, priority);
-		pHeap.createHeap();
 		pHeap.print();
 		
 		while (true) {
@@ -59,14 +58,17 @@ public class PriorityQueue {
 				case 1:
 					System.out.println("Enter the value to enqueue: ");
 					val = sc.nextInt();
-					int status = pHeap.enQueue(val);
-					if (status == Integer.MIN_VALUE) {
-						System.out.println("Overflow condition");
-					}
+					System.out.println("Enter its priority: ");
+					int pr = sc.nextInt();
+					pHeap.enQueue(val, pr);
 					break;
 				case 2:
-					val = pHeap.deQueue();
-					System.out.println("Dequeued!" + val);
+					if (pHeap.isEmpty()) {
+						System.out.println("Underflow condition");
+					} else {
+						val = pHeap.deQueue();
+						System.out.println("Dequeued!" + val);
+					}
 					break;
 				case 3:
 					pHeap.print();
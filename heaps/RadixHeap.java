@@ -0,0 +1,220 @@
+/* Indexed monotone radix heap of int ids with non-negative int priorities,
+ * lowest first.
+ * Monotone means no priority may go below the last one taken out (by deQueue
+ * or peek), which is what Dijkstra's algorithm with non-negative edge weights
+ * needs. Ids sit in 32 buckets by the highest bit in which their priority
+ * differs from that last priority: bucket 0 holds ties with it and bucket b
+ * priorities that first differ in bit b - 1. Queueing an id or changing its
+ * priority is O(1): it just moves to its bucket. When bucket 0 runs empty, the
+ * first non-empty bucket is spread out over the lower ones around its
+ * smallest priority. An id only ever moves to lower buckets, so that costs
+ * O(log C) per id over its whole stay for priorities up to C.
+ * Buckets are int arrays, and every id keeps its bucket and slot, so, as in
+ * IndexedPriorityHeap, ids should be dense non-negative ints.
+ * URL: https://en.wikipedia.org/wiki/Radix_heap
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class RadixHeap implements IntPriorityQueue {
+	private static final int BUCKETS = 32;
+	private static final int ABSENT = -1;
+
+	// id -> priority, bucket and index in the bucket (ABSENT if not queued)
+	int[] priority;
+	int[] bucketOf;
+	int[] slot;
+	int[][] buckets = new int[BUCKETS][];
+	int[] bucketSize = new int[BUCKETS];
+	// the last priority taken out; nothing queued is below it
+	int last;
+	int size;
+
+	public RadixHeap() {
+		this(PriorityHeap.DEFAULT_CAPACITY);
+	}
+
+	/* idCapacity is the expected number of ids; the arrays grow past it if
+	 * needed.
+	 */
+	public RadixHeap(int idCapacity) {
+		if (idCapacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + idCapacity);
+		}
+		int capacity = Math.max(1, idCapacity);
+		priority = new int[capacity];
+		bucketOf = new int[capacity];
+		slot = new int[capacity];
+		Arrays.fill(slot, ABSENT);
+		for (int b = 0; b < BUCKETS; b++) {
+			buckets[b] = new int[4];
+		}
+		last = 0;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int id) {
+		return id >= 0 && id < slot.length && slot[id] != ABSENT;
+	}
+
+	public int priorityOf(int id) {
+		checkQueued(id);
+		return priority[id];
+	}
+
+	// The last priority taken out; enQueue and changePriority may not go below it.
+	public int getLast() {
+		return last;
+	}
+
+	/* Empties the queue and starts over from priority 0. Takes O(n) time for
+	 * the n queued ids.
+	 */
+	public void clear() {
+		for (int b = 0; b < BUCKETS; b++) {
+			for (int idx = 0; idx < bucketSize[b]; idx++) {
+				slot[buckets[b][idx]] = ABSENT;
+			}
+			bucketSize[b] = 0;
+		}
+		last = 0;
+		size = 0;
+	}
+
+	private int bucket(int pr) {
+		return 32 - Integer.numberOfLeadingZeros(pr ^ last);
+	}
+
+	private void checkPriority(int pr) {
+		if (pr < last) {
+			throw new IllegalArgumentException("Priority " + pr + " is below the last one taken out, " + last);
+		}
+	}
+
+	public void enQueue(int id, int pr) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Negative id: " + id);
+		}
+		checkPriority(pr);
+		if (id >= slot.length) {
+			grow(id);
+		}
+		if (slot[id] != ABSENT) {
+			throw new IllegalArgumentException("Id " + id + " is already queued");
+		}
+		priority[id] = pr;
+		add(bucket(pr), id);
+		size++;
+	}
+
+	public int deQueue() {
+		int ret = peek();
+		removeFrom(0, slot[ret]);
+		slot[ret] = ABSENT;
+		size--;
+		return ret;
+	}
+
+	/* Returns an id with the lowest priority. If there is none at the last
+	 * priority taken out, this moves last up to the lowest queued priority.
+	 */
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException("Priority queue is empty");
+		}
+		if (bucketSize[0] == 0) {
+			redistribute();
+		}
+		return buckets[0][bucketSize[0] - 1];
+	}
+
+	public int peekPriority() {
+		return priority[peek()];
+	}
+
+	/* Sets the priority of a queued id in O(1). Throws
+	 * IllegalArgumentException if pr is below the last priority taken out.
+	 */
+	public void changePriority(int id, int pr) {
+		checkQueued(id);
+		checkPriority(pr);
+		removeFrom(bucketOf[id], slot[id]);
+		priority[id] = pr;
+		add(bucket(pr), id);
+	}
+
+	public boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		removeFrom(bucketOf[id], slot[id]);
+		slot[id] = ABSENT;
+		size--;
+		return true;
+	}
+
+	/* Empties the first non-empty bucket into the lower ones, around its
+	 * lowest priority, which becomes last. Its ids all agree with that
+	 * priority above the bucket's bit, so each lands in a lower bucket.
+	 */
+	private void redistribute() {
+		int b = 1;
+		while (bucketSize[b] == 0) {
+			b++;
+		}
+		int[] ids = buckets[b];
+		int count = bucketSize[b];
+		int min = priority[ids[0]];
+		for (int idx = 1; idx < count; idx++) {
+			min = Math.min(min, priority[ids[idx]]);
+		}
+		last = min;
+		bucketSize[b] = 0;
+		for (int idx = 0; idx < count; idx++) {
+			int id = ids[idx];
+			add(bucket(priority[id]), id);
+		}
+	}
+
+	private void add(int b, int id) {
+		if (bucketSize[b] == buckets[b].length) {
+			buckets[b] = Arrays.copyOf(buckets[b], 2 * buckets[b].length);
+		}
+		bucketOf[id] = b;
+		slot[id] = bucketSize[b];
+		buckets[b][bucketSize[b]++] = id;
+	}
+
+	// Fills the slot with the bucket's last id.
+	private void removeFrom(int b, int idx) {
+		int moved = buckets[b][--bucketSize[b]];
+		buckets[b][idx] = moved;
+		slot[moved] = idx;
+	}
+
+	private void checkQueued(int id) {
+		if (!contains(id)) {
+			throw new NoSuchElementException("Id " + id + " is not queued");
+		}
+	}
+
+	private void grow(int id) {
+		int oldLength = slot.length;
+		long capacity = Math.max((long) id + 1, 2L * oldLength);
+		int length = (int) Math.min(capacity, Integer.MAX_VALUE - 8);
+		priority = Arrays.copyOf(priority, length);
+		bucketOf = Arrays.copyOf(bucketOf, length);
+		slot = Arrays.copyOf(slot, length);
+		Arrays.fill(slot, oldLength, length, ABSENT);
+	}
+}
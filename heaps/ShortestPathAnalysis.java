@@ -0,0 +1,82 @@
+/* Runs Dijkstra's algorithm on a random directed graph with integer edge
+ * weights once for every IntPriorityQueue.Kind, so the only thing that
+ * changes between runs is the queue. Prints the milliseconds per run as CSV
+ * and checks that every queue finds the same distances.
+ * Usage: java heaps.ShortestPathAnalysis [vertices] [edgesPerVertex] [maxWeight]
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class ShortestPathAnalysis {
+
+	private static final int UNREACHED = Integer.MAX_VALUE;
+
+	// Edges of vertex v are targets[offsets[v] .. offsets[v + 1]) with the same weights.
+	private static int[] offsets;
+	private static int[] targets;
+	private static int[] weights;
+
+	private static void createGraph(int vertices, int edgesPerVertex, int maxWeight) {
+		Random rm = new Random(1);
+		offsets = new int[vertices + 1];
+		targets = new int[vertices * edgesPerVertex];
+		weights = new int[targets.length];
+		for (int v = 0; v < vertices; v++) {
+			offsets[v + 1] = offsets[v] + edgesPerVertex;
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				targets[e] = rm.nextInt(vertices);
+				weights[e] = 1 + rm.nextInt(maxWeight);
+			}
+		}
+	}
+
+	/* Shortest distances from source, with queue deciding which vertex is
+	 * settled next.
+	 */
+	public static int[] dijkstra(int source, IntPriorityQueue queue) {
+		int[] dist = new int[offsets.length - 1];
+		Arrays.fill(dist, UNREACHED);
+		dist[source] = 0;
+		queue.enQueue(source, 0);
+		while (!queue.isEmpty()) {
+			int v = queue.deQueue();
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int w = targets[e];
+				int candidate = dist[v] + weights[e];
+				if (candidate < dist[w]) {
+					dist[w] = candidate;
+					queue.enQueueOrChange(w, candidate);
+				}
+			}
+		}
+		return dist;
+	}
+
+	public static void main(String[] args) {
+		int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int edgesPerVertex = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int maxWeight = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		createGraph(vertices, edgesPerVertex, maxWeight);
+		System.out.println("===================Analysis Start===================");
+		System.out.println("Queue,Vertices,Edges,Millis");
+		int[] expected = null;
+		for (boolean print : new boolean[] {false, true}) {
+			for (IntPriorityQueue.Kind kind : IntPriorityQueue.Kind.values()) {
+				long start = System.nanoTime();
+				int[] dist = dijkstra(0, kind.create(vertices));
+				long elapsed = System.nanoTime() - start;
+				if (expected == null) {
+					expected = dist;
+				} else if (!Arrays.equals(expected, dist)) {
+					throw new IllegalStateException(kind + " found different distances");
+				}
+				if (print) {
+					System.out.printf("%s,%d,%d,%.2f%n", kind, vertices, targets.length, elapsed / 1e6);
+				}
+			}
+		}
+		System.out.println("===================Analysis Complete================");
+	}
+}
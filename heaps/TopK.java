@@ -0,0 +1,113 @@
+/* Streaming top-K (or bottom-K) selector for int values.
+ * Keeps the best k values seen so far in a PriorityHeap ordered the other way
+ * round (a min-heap for the k largest), so its top is the worst of the kept
+ * values. A new value that beats it replaces it with one sift-down; anything
+ * else is dropped after a single comparison. That is O(N log K) time for N
+ * values and O(K) memory, however long the stream.
+ * Partial results merge, so parallel segments can each fill their own TopK
+ * and be combined at the end:
+ *   int[] best = IntStream.of(values).parallel()
+ *       .collect(() -> TopK.largest(k), TopK::add, TopK::merge).toSortedArray();
+ * or, for a Stream<Integer>, stream.collect(TopK.collector(k, true)).
+ */
+package heaps;
+
+import java.util.Arrays;
+import java.util.stream.Collector;
+
+public class TopK {
+	private final int k;
+	// true: keep the k largest values, false: the k smallest
+	private final boolean largest;
+	// the kept values, worst on top; each value is also its own priority
+	private final PriorityHeap heap;
+
+	public TopK(int k, boolean largest) {
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be positive: " + k);
+		}
+		this.k = k;
+		this.largest = largest;
+		heap = new PriorityHeap(Math.min(k, PriorityHeap.DEFAULT_CAPACITY), !largest);
+	}
+
+	public static TopK largest(int k) {
+		return new TopK(k, true);
+	}
+
+	public static TopK smallest(int k) {
+		return new TopK(k, false);
+	}
+
+	/* Collector for Stream<Integer> that returns the k largest (or smallest)
+	 * values, best first. Works with parallel streams.
+	 */
+	public static Collector<Integer, TopK, int[]> collector(int k, boolean largest) {
+		return Collector.of(() -> new TopK(k, largest), TopK::add, TopK::merge, TopK::toSortedArray);
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public boolean isLargest() {
+		return largest;
+	}
+
+	// Number of values kept, at most k.
+	public int size() {
+		return heap.size();
+	}
+
+	public void add(int value) {
+		if (heap.size() < k) {
+			heap.enQueue(value, value);
+		} else if (largest ? value > heap.peekPriority() : value < heap.peekPriority()) {
+			heap.replaceTop(value, value);
+		}
+	}
+
+	public void addAll(int[] values) {
+		addAll(values, 0, values.length);
+	}
+
+	// Adds values[from] up to, but not including, values[to].
+	public void addAll(int[] values, int from, int to) {
+		if (from < 0 || to > values.length || from > to) {
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + values.length);
+		}
+		for (int idx = from; idx < to; idx++) {
+			add(values[idx]);
+		}
+	}
+
+	/* Adds the values kept by other to this one and returns this. Both must
+	 * have the same k and direction; other is left unchanged.
+	 */
+	public TopK merge(TopK other) {
+		if (other.k != k || other.largest != largest) {
+			throw new IllegalArgumentException("Cannot merge top " + other.k + " into top " + k
+					+ (other.largest == largest ? "" : " of the other direction"));
+		}
+		addAll(other.heap.priority, 0, other.heap.size());
+		return this;
+	}
+
+	// The kept values, best first.
+	public int[] toSortedArray() {
+		int[] result = Arrays.copyOf(heap.priority, heap.size());
+		Arrays.sort(result);
+		if (largest) {
+			for (int lo = 0, hi = result.length - 1; lo < hi; lo++, hi--) {
+				int temp = result[lo];
+				result[lo] = result[hi];
+				result[hi] = temp;
+			}
+		}
+		return result;
+	}
+
+	public void clear() {
+		heap.clear();
+	}
+}
@@ -0,0 +1,489 @@
+/**
+ * A B+ tree multiset with the same public surface as RedBlackTree: emplace, delete, find,
+ * contains, getSize, getHeight, in-order iteration and range scans.
+ *
+ * Every node holds up to order keys in a sorted array, so a lookup binary searches a few
+ * contiguous arrays instead of chasing one TreeNode per comparison. Internal nodes only hold
+ * separators: the keys themselves, with their duplicate counts, live in the leaves, which
+ * are linked in key order so scans never climb back up the tree. Every node but the root is
+ * kept at least half full, so the height stays within log_(order/2)(n) + 1.
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class BPlusTree<T extends Comparable<? super T>> implements Iterable<T> {
+
+    public static final int DEFAULT_ORDER = 64;
+    private static final int MIN_ORDER = 3;
+
+    private final int order; // the most keys a node holds
+    private final int minKeys; // the fewest keys a node other than the root holds
+    private Node root;
+    private int size;
+    private int height;
+
+    public BPlusTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    /**
+     * Creates an empty tree whose nodes hold up to order keys.
+     */
+    public BPlusTree(int order) {
+        if (order < MIN_ORDER) throw new IllegalArgumentException("order must be at least " + MIN_ORDER);
+        this.order = order;
+        this.minKeys = order / 2;
+        this.root = new Leaf(order);
+        this.size = 0;
+        this.height = 1;
+    }
+
+    /**
+     * Inserts data, or counts one more duplicate if it is already present.
+     */
+    public void emplace(T data) {
+        if (data == null) throw new NullPointerException();
+        Node sibling = insert(this.root, data);
+        if (sibling != null) { // the root split, so the tree grows a level
+            Inner root = new Inner(this.order);
+            root.keys[0] = sibling.lowestKey();
+            root.children[0] = this.root;
+            root.children[1] = sibling;
+            root.keyCount = 1;
+            this.root = root;
+            this.height++;
+        }
+    }
+
+    /**
+     * Removes one occurrence of key. The key itself goes once its last duplicate is gone.
+     */
+    public void delete(T key) {
+        delete(this.root, key);
+        if (this.root instanceof Inner && this.root.keyCount == 0) { // the root's children merged
+            this.root = ((Inner) this.root).children[0];
+            this.height--;
+        }
+    }
+
+    /**
+     * Returns the stored key equal to key, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public T find(T key) {
+        Leaf leaf = findLeaf(key);
+        int index = leaf.search(key);
+        return index >= 0 ? (T) leaf.keys[index] : null;
+    }
+
+    public boolean contains(T key) {
+        return findLeaf(key).search(key) >= 0;
+    }
+
+    /**
+     * Returns how many times key was inserted, or 0 if it is absent.
+     */
+    public int getNodesAtLocation(T key) {
+        Leaf leaf = findLeaf(key);
+        int index = leaf.search(key);
+        return index >= 0 ? leaf.counts[index] : 0;
+    }
+
+    /**
+     * Returns the number of distinct keys.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the number of levels, counting the leaves. All leaves are at the same depth.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Iterates the keys in ascending order, once per duplicate.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        Node node = this.root;
+        while (node instanceof Inner) node = ((Inner) node).children[0];
+        return new LeafIterator((Leaf) node, 0, null, false);
+    }
+
+    /**
+     * Iterates the keys in [from, to) in ascending order, once per duplicate. Like
+     * RedBlackTree.subSet, the upper bound is exclusive.
+     */
+    public Iterable<T> subSet(T from, T to) {
+        return subSet(from, true, to, false);
+    }
+
+    /**
+     * Iterates the keys between from and to in ascending order, once per duplicate. The scan
+     * descends once to the first key and then follows the leaf links.
+     */
+    public Iterable<T> subSet(T from, boolean fromInclusive, T to, boolean toInclusive) {
+        if (from.compareTo(to) > 0) throw new IllegalArgumentException("from is greater than to");
+        return () -> {
+            Leaf leaf = findLeaf(from);
+            int index = leaf.search(from);
+            if (index < 0) {
+                index = -index - 1;
+            } else if (!fromInclusive) {
+                index++;
+            }
+            return new LeafIterator(leaf, index, to, toInclusive);
+        };
+    }
+
+    private Leaf findLeaf(T key) {
+        Node node = this.root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[inner.childIndex(key)];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Inserts data below node. Returns the new right sibling if node had to split, or null.
+     */
+    private Node insert(Node node, T data) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int index = leaf.search(data);
+            if (index >= 0) {
+                leaf.counts[index]++;
+                return null;
+            }
+            leaf.insertAt(-index - 1, data, 1);
+            this.size++;
+            return leaf.keyCount > this.order ? leaf.split() : null;
+        }
+        Inner inner = (Inner) node;
+        int index = inner.childIndex(data);
+        Node sibling = insert(inner.children[index], data);
+        if (sibling == null) return null;
+        inner.insertAt(index, sibling.lowestKey(), sibling);
+        return inner.keyCount > this.order ? inner.split() : null;
+    }
+
+    /**
+     * Removes one occurrence of key below node, then refills any child left less than half
+     * full. Returns whether node itself is now less than half full.
+     */
+    private boolean delete(Node node, T key) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int index = leaf.search(key);
+            if (index < 0) return false; //no key to delete
+            if (--leaf.counts[index] > 0) return false;
+            leaf.removeAt(index);
+            this.size--;
+            return leaf.keyCount < this.minKeys;
+        }
+        Inner inner = (Inner) node;
+        int index = inner.childIndex(key);
+        if (delete(inner.children[index], key)) {
+            refill(inner, index);
+        }
+        return inner.keyCount < this.minKeys;
+    }
+
+    /**
+     * Refills parent's child at index, which is one key short, by borrowing a key from a
+     * sibling that can spare one, or else by merging it with a sibling.
+     */
+    private void refill(Inner parent, int index) {
+        Node child = parent.children[index];
+        if (index > 0 && parent.children[index - 1].keyCount > this.minKeys) {
+            child.borrowFromLeft(parent, index);
+        } else if (index < parent.keyCount && parent.children[index + 1].keyCount > this.minKeys) {
+            child.borrowFromRight(parent, index);
+        } else if (index > 0) {
+            parent.children[index - 1].mergeWithRight(parent, index - 1);
+        } else {
+            child.mergeWithRight(parent, index);
+        }
+    }
+
+    private abstract static class Node {
+        final Object[] keys; // one spare slot so a node can overflow before it splits
+        int keyCount;
+
+        Node(int order) {
+            this.keys = new Object[order + 1];
+        }
+
+        /**
+         * Binary searches the keys. Returns the index of key, or -(insertion point) - 1.
+         */
+        @SuppressWarnings("unchecked")
+        final <T extends Comparable<? super T>> int search(T key) {
+            int low = 0;
+            int high = this.keyCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = key.compareTo((T) this.keys[middle]);
+                if (comparison > 0) {
+                    low = middle + 1;
+                } else if (comparison < 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        /**
+         * Returns the smallest key in this subtree, used as the separator in front of it.
+         */
+        abstract Object lowestKey();
+
+        abstract Node split();
+
+        /**
+         * Moves one key (and child) over from the left sibling, parent.children[index - 1].
+         */
+        abstract void borrowFromLeft(Inner parent, int index);
+
+        /**
+         * Moves one key (and child) over from the right sibling, parent.children[index + 1].
+         */
+        abstract void borrowFromRight(Inner parent, int index);
+
+        /**
+         * Absorbs the right sibling, parent.children[index + 1], which is then unlinked.
+         */
+        abstract void mergeWithRight(Inner parent, int index);
+    }
+
+    private static final class Leaf extends Node {
+        final int[] counts; // for storing duplicates
+        Leaf next;
+
+        Leaf(int order) {
+            super(order);
+            this.counts = new int[order + 1];
+        }
+
+        Object lowestKey() {
+            return this.keys[0];
+        }
+
+        void insertAt(int index, Object key, int count) {
+            System.arraycopy(this.keys, index, this.keys, index + 1, this.keyCount - index);
+            System.arraycopy(this.counts, index, this.counts, index + 1, this.keyCount - index);
+            this.keys[index] = key;
+            this.counts[index] = count;
+            this.keyCount++;
+        }
+
+        void removeAt(int index) {
+            System.arraycopy(this.keys, index + 1, this.keys, index, this.keyCount - index - 1);
+            System.arraycopy(this.counts, index + 1, this.counts, index, this.keyCount - index - 1);
+            this.keys[--this.keyCount] = null;
+        }
+
+        Leaf split() {
+            Leaf right = new Leaf(this.keys.length - 1);
+            int keep = (this.keyCount + 1) / 2;
+            right.keyCount = this.keyCount - keep;
+            System.arraycopy(this.keys, keep, right.keys, 0, right.keyCount);
+            System.arraycopy(this.counts, keep, right.counts, 0, right.keyCount);
+            Arrays.fill(this.keys, keep, this.keyCount, null);
+            this.keyCount = keep;
+            right.next = this.next;
+            this.next = right;
+            return right;
+        }
+
+        void borrowFromLeft(Inner parent, int index) {
+            Leaf left = (Leaf) parent.children[index - 1];
+            int last = left.keyCount - 1;
+            insertAt(0, left.keys[last], left.counts[last]);
+            left.removeAt(last);
+            parent.keys[index - 1] = this.keys[0];
+        }
+
+        void borrowFromRight(Inner parent, int index) {
+            Leaf right = (Leaf) parent.children[index + 1];
+            insertAt(this.keyCount, right.keys[0], right.counts[0]);
+            right.removeAt(0);
+            parent.keys[index] = right.keys[0];
+        }
+
+        void mergeWithRight(Inner parent, int index) {
+            Leaf right = (Leaf) parent.children[index + 1];
+            System.arraycopy(right.keys, 0, this.keys, this.keyCount, right.keyCount);
+            System.arraycopy(right.counts, 0, this.counts, this.keyCount, right.keyCount);
+            this.keyCount += right.keyCount;
+            this.next = right.next;
+            parent.removeAt(index);
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children; // children[i] holds the keys below keys[i], children[i + 1] the rest
+
+        Inner(int order) {
+            super(order);
+            this.children = new Node[order + 2];
+        }
+
+        /**
+         * Returns the index of the child whose subtree spans key.
+         */
+        <T extends Comparable<? super T>> int childIndex(T key) {
+            int index = search(key);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        Object lowestKey() {
+            return this.children[0].lowestKey();
+        }
+
+        /**
+         * Puts key at keys[index] and child right after it, at children[index + 1].
+         */
+        void insertAt(int index, Object key, Node child) {
+            System.arraycopy(this.keys, index, this.keys, index + 1, this.keyCount - index);
+            System.arraycopy(this.children, index + 1, this.children, index + 2, this.keyCount - index);
+            this.keys[index] = key;
+            this.children[index + 1] = child;
+            this.keyCount++;
+        }
+
+        /**
+         * Drops keys[index] and the child after it, children[index + 1].
+         */
+        void removeAt(int index) {
+            System.arraycopy(this.keys, index + 1, this.keys, index, this.keyCount - index - 1);
+            System.arraycopy(this.children, index + 2, this.children, index + 1, this.keyCount - index - 1);
+            this.keys[this.keyCount - 1] = null;
+            this.children[this.keyCount] = null;
+            this.keyCount--;
+        }
+
+        /**
+         * Moves the upper half to a new sibling. The middle key moves up to the parent as
+         * the separator, so neither half keeps it.
+         */
+        Inner split() {
+            Inner right = new Inner(this.keys.length - 1);
+            int middle = this.keyCount / 2;
+            right.keyCount = this.keyCount - middle - 1;
+            System.arraycopy(this.keys, middle + 1, right.keys, 0, right.keyCount);
+            System.arraycopy(this.children, middle + 1, right.children, 0, right.keyCount + 1);
+            Arrays.fill(this.keys, middle, this.keyCount, null);
+            Arrays.fill(this.children, middle + 1, this.keyCount + 1, null);
+            this.keyCount = middle;
+            return right;
+        }
+
+        void borrowFromLeft(Inner parent, int index) {
+            Inner left = (Inner) parent.children[index - 1];
+            System.arraycopy(this.keys, 0, this.keys, 1, this.keyCount);
+            System.arraycopy(this.children, 0, this.children, 1, this.keyCount + 1);
+            this.keys[0] = parent.keys[index - 1];
+            this.children[0] = left.children[left.keyCount];
+            this.keyCount++;
+            parent.keys[index - 1] = left.keys[left.keyCount - 1];
+            left.keys[left.keyCount - 1] = null;
+            left.children[left.keyCount] = null;
+            left.keyCount--;
+        }
+
+        void borrowFromRight(Inner parent, int index) {
+            Inner right = (Inner) parent.children[index + 1];
+            this.keys[this.keyCount] = parent.keys[index];
+            this.children[this.keyCount + 1] = right.children[0];
+            this.keyCount++;
+            parent.keys[index] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.keyCount - 1);
+            System.arraycopy(right.children, 1, right.children, 0, right.keyCount);
+            right.keys[right.keyCount - 1] = null;
+            right.children[right.keyCount] = null;
+            right.keyCount--;
+        }
+
+        void mergeWithRight(Inner parent, int index) {
+            Inner right = (Inner) parent.children[index + 1];
+            this.keys[this.keyCount] = parent.keys[index]; // the separator comes back down
+            System.arraycopy(right.keys, 0, this.keys, this.keyCount + 1, right.keyCount);
+            System.arraycopy(right.children, 0, this.children, this.keyCount + 1, right.keyCount + 1);
+            this.keyCount += right.keyCount + 1;
+            parent.removeAt(index);
+        }
+    }
+
+    /**
+     * Walks the linked leaves from leaf.keys[index] up to an optional upper bound.
+     */
+    private final class LeafIterator implements Iterator<T> {
+        private final T to; // null for no bound
+        private final boolean toInclusive;
+        private Leaf leaf;
+        private int index;
+        private int duplicatesLeft;
+
+        LeafIterator(Leaf leaf, int index, T to, boolean toInclusive) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.leaf = leaf;
+            this.index = index;
+            skipToKey();
+        }
+
+        /**
+         * Moves to the next key, possibly in a later leaf, and ends the scan past the bound.
+         */
+        @SuppressWarnings("unchecked")
+        private void skipToKey() {
+            while (this.leaf != null && this.index >= this.leaf.keyCount) {
+                this.leaf = this.leaf.next;
+                this.index = 0;
+            }
+            if (this.leaf == null) return;
+            if (this.to != null) {
+                int comparison = ((T) this.leaf.keys[this.index]).compareTo(this.to);
+                if (comparison > 0 || (comparison == 0 && !this.toInclusive)) {
+                    this.leaf = null;
+                    return;
+                }
+            }
+            this.duplicatesLeft = this.leaf.counts[this.index];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.leaf != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (this.leaf == null) throw new NoSuchElementException();
+            T key = (T) this.leaf.keys[this.index];
+            if (--this.duplicatesLeft == 0) {
+                this.index++;
+                skipToKey();
+            }
+            return key;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Compares BPlusTree against RedBlackTree on random Integer keys. For each size it times
+ * inserting every key, looking each one up again in a different random order, and a batch
+ * of short range scans, and prints nanoseconds per operation as CSV. Each measurement is run
+ * once to warm up and once for the record.
+ *
+ * Usage: java -Xmx<heap> BPlusTreeAnalysis [minLog2Keys] [maxLog2Keys] [order]
+ * 2^20 keys need about 200MB of heap per tree; 100M keys (2^27) need tens of gigabytes.
+ */
+
+import java.util.Random;
+
+public class BPlusTreeAnalysis {
+
+    private static final int SCANS = 10000;
+    private static final int SCAN_WIDTH = 1000;
+
+    private interface Target {
+        void emplace(Integer key);
+        boolean contains(Integer key);
+        long scan(Integer from, Integer to); // sums the keys in [from, to)
+    }
+
+    private static Target redBlackTree() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        return new Target() {
+            public void emplace(Integer key) { tree.emplace(key); }
+            public boolean contains(Integer key) { return tree.contains(key); }
+            public long scan(Integer from, Integer to) {
+                long sum = 0;
+                for (int key : tree.subSet(from, true, to, false)) sum += key;
+                return sum;
+            }
+        };
+    }
+
+    private static Target bPlusTree(int order) {
+        BPlusTree<Integer> tree = new BPlusTree<>(order);
+        return new Target() {
+            public void emplace(Integer key) { tree.emplace(key); }
+            public boolean contains(Integer key) { return tree.contains(key); }
+            public long scan(Integer from, Integer to) {
+                long sum = 0;
+                for (int key : tree.subSet(from, true, to, false)) sum += key;
+                return sum;
+            }
+        };
+    }
+
+    private static Integer[] randomKeys(int n, long seed) {
+        Random random = new Random(seed);
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) keys[i] = random.nextInt();
+        return keys;
+    }
+
+    /*
+     * Prints one CSV line per operation; the returned checksum keeps the JIT honest.
+     */
+    private static long measure(String name, Target target, Integer[] keys, Integer[] probes, boolean print) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (Integer key : keys) target.emplace(key);
+        long inserted = System.nanoTime();
+        for (Integer probe : probes) {
+            if (target.contains(probe)) checksum++;
+        }
+        long searched = System.nanoTime();
+        int step = Math.max(1, keys.length / SCANS);
+        long width = (long) SCAN_WIDTH * (1L << 32) / keys.length; // spans about SCAN_WIDTH keys
+        for (int i = 0; i < keys.length; i += step) {
+            checksum += target.scan(keys[i], (int) Math.min(Integer.MAX_VALUE, keys[i] + width));
+        }
+        long scanned = System.nanoTime();
+        if (print) {
+            int n = keys.length;
+            System.out.printf("%s,%d,emplace,%.1f%n", name, n, (double) (inserted - start) / n);
+            System.out.printf("%s,%d,contains,%.1f%n", name, n, (double) (searched - inserted) / probes.length);
+            System.out.printf("%s,%d,scan%d,%.1f%n", name, n, SCAN_WIDTH, (double) (scanned - searched) / (n / step));
+        }
+        return checksum;
+    }
+
+    public static void main(String[] args) {
+        int minLog2 = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int maxLog2 = args.length > 1 ? Integer.parseInt(args[1]) : minLog2 + 2;
+        int order = args.length > 2 ? Integer.parseInt(args[2]) : BPlusTree.DEFAULT_ORDER;
+        long checksum = 0;
+        System.out.println("===================Analysis Start===================");
+        System.out.println("Tree,Keys,Operation,NanosPerOperation");
+        for (int log2 = minLog2; log2 <= maxLog2; log2++) {
+            Integer[] keys = randomKeys(1 << log2, log2);
+            Integer[] probes = keys.clone();
+            java.util.Collections.shuffle(java.util.Arrays.asList(probes), new Random(-log2));
+            for (boolean print : new boolean[] {false, true}) {
+                checksum += measure("RedBlackTree", redBlackTree(), keys, probes, print);
+                checksum += measure("BPlusTree-" + order, bPlusTree(order), keys, probes, print);
+            }
+        }
+        System.out.println("===================Analysis Complete================");
+        System.err.println("checksum " + checksum);
+    }
+}
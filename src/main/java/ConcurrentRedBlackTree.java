@@ -0,0 +1,212 @@
+/**
+ * A thread-safe wrapper around RedBlackTree for read-mostly workloads.
+ *
+ * Writers serialize on the write lock of a StampedLock. Readers do not take a lock at all:
+ * they walk the tree under an optimistic stamp and then validate that no writer ran in the
+ * meantime, retrying if one did. A walk over a tree that a writer is rotating can see
+ * nonsense, so readers check the stamp every few steps and never hand out anything until it
+ * has been validated. Only a reader that keeps losing the race to writers falls back to the
+ * read lock, so writers cannot starve it forever.
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+public class ConcurrentRedBlackTree<T extends Comparable<? super T>> {
+
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    private static final int VALIDATE_INTERVAL = 64; // steps between stamp checks during a walk
+
+    private final RedBlackTree<T> tree;
+    private final StampedLock lock;
+    private volatile int size; // published by writers, so getSize needs neither a stamp nor a lock
+
+    public ConcurrentRedBlackTree() {
+        this.tree = new RedBlackTree<>();
+        this.lock = new StampedLock();
+    }
+
+    public void emplace(T data) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.tree.emplace(data);
+            this.size = this.tree.getSize();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void delete(T key) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.tree.delete(key);
+            this.size = this.tree.getSize();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the stored key equal to key, or null. Nodes are not handed out, since a writer
+     * may relink them at any time.
+     */
+    public T find(T key) {
+        return read(stamp -> {
+            RedBlackTree.TreeNode<T> node = search(key, stamp);
+            return node == null ? null : node.getData();
+        });
+    }
+
+    public boolean contains(T key) {
+        return find(key) != null;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the exact height in O(n). The walk keeps its own stack rather than recursing,
+     * so a stale snapshot cannot overflow the thread stack before the stamp is checked.
+     */
+    public int getHeight() {
+        return read(this::measureHeight);
+    }
+
+    /**
+     * Passes every key in [from, to] to action in ascending order, once per duplicate. The
+     * keys are collected first and only handed to action once the scan has been validated,
+     * so action always sees one consistent version of the tree.
+     */
+    public void forEachInRange(T from, T to, Consumer<? super T> action) {
+        List<T> keys = read(stamp -> collectRange(from, to, stamp));
+        for (T key : keys) {
+            action.accept(key);
+        }
+    }
+
+    /**
+     * Runs reader optimistically, and under the read lock if it keeps getting invalidated.
+     * reader gets the stamp so long walks can bail out early once it is stale.
+     */
+    private <R> R read(LongFunction<R> reader) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = this.lock.tryOptimisticRead();
+            if (stamp == 0) { // a writer holds the lock
+                Thread.onSpinWait();
+                continue;
+            }
+            try {
+                R result = reader.apply(stamp);
+                if (this.lock.validate(stamp)) return result;
+            } catch (RuntimeException e) {
+                // an inconsistent snapshot can throw; only a consistent one may report it
+                if (this.lock.validate(stamp)) throw e;
+            }
+        }
+        long stamp = this.lock.readLock();
+        try {
+            return reader.apply(stamp);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    private RedBlackTree.TreeNode<T> search(T key, long stamp) {
+        RedBlackTree.TreeNode<T> current = this.tree.getRoot();
+        int steps = 0;
+        while (current != null) {
+            if (++steps % VALIDATE_INTERVAL == 0 && !this.lock.validate(stamp)) return null;
+            int comparison = key.compareTo(current.getData());
+            if (comparison < 0) {
+                current = current.getLeftChild();
+            } else if (comparison > 0) {
+                current = current.getRightChild();
+            } else {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    private List<T> collectRange(T from, T to, long stamp) {
+        List<T> keys = new ArrayList<>();
+        // find the first node >= from
+        RedBlackTree.TreeNode<T> current = this.tree.getRoot();
+        RedBlackTree.TreeNode<T> first = null;
+        int steps = 0;
+        while (current != null) {
+            if (++steps % VALIDATE_INTERVAL == 0 && !this.lock.validate(stamp)) return keys;
+            if (current.getData().compareTo(from) >= 0) {
+                first = current;
+                current = current.getLeftChild();
+            } else {
+                current = current.getRightChild();
+            }
+        }
+        // then follow parent pointers from successor to successor
+        for (current = first; current != null && current.getData().compareTo(to) <= 0;
+                current = successor(current, stamp)) {
+            if (++steps % VALIDATE_INTERVAL == 0 && !this.lock.validate(stamp)) return keys;
+            for (int i = current.getNodesAtLocation(); i > 0; i--) {
+                keys.add(current.getData());
+            }
+        }
+        return keys;
+    }
+
+    private int measureHeight(long stamp) {
+        Deque<RedBlackTree.TreeNode<T>> nodes = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        if (this.tree.getRoot() != null) {
+            nodes.push(this.tree.getRoot());
+            depths.push(1);
+        }
+        int height = 0;
+        int steps = 0;
+        while (!nodes.isEmpty()) {
+            if (++steps % VALIDATE_INTERVAL == 0 && !this.lock.validate(stamp)) return 0;
+            RedBlackTree.TreeNode<T> node = nodes.pop();
+            int depth = depths.pop();
+            height = Math.max(height, depth);
+            if (node.getLeftChild() != null) {
+                nodes.push(node.getLeftChild());
+                depths.push(depth + 1);
+            }
+            if (node.getRightChild() != null) {
+                nodes.push(node.getRightChild());
+                depths.push(depth + 1);
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Returns the in-order successor of node, or null if there is none or the stamp went
+     * stale. A rotation briefly links two nodes as each other's parent, so the climb checks
+     * the stamp too.
+     */
+    private RedBlackTree.TreeNode<T> successor(RedBlackTree.TreeNode<T> node, long stamp) {
+        int steps = 0;
+        if (node.getRightChild() != null) {
+            node = node.getRightChild();
+            while (node.getLeftChild() != null) {
+                if (++steps % VALIDATE_INTERVAL == 0 && !this.lock.validate(stamp)) return null;
+                node = node.getLeftChild();
+            }
+            return node;
+        }
+        RedBlackTree.TreeNode<T> parent = node.getParent();
+        while (parent != null && node == parent.getRightChild()) {
+            if (++steps % VALIDATE_INTERVAL == 0 && !this.lock.validate(stamp)) return null;
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Contention benchmark for ConcurrentRedBlackTree against a RedBlackTree behind one global
+ * lock and against the lock-free ConcurrentSkipListMultiset. Every thread runs a random mix of contains() and emplace()/delete() calls for a fixed
+ * time, and the total throughput is printed as CSV for each mix and thread count.
+ *
+ * Usage: java ConcurrentRedBlackTreeAnalysis [maxThreads] [secondsPerRun]
+ */
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentRedBlackTreeAnalysis {
+
+    private static final int KEY_RANGE = 1 << 20;
+    private static final int[] READ_PERCENTAGES = {95, 50};
+
+    private interface Target {
+        boolean contains(int key);
+        void emplace(int key);
+        void delete(int key);
+    }
+
+    private static Target optimistic() {
+        ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+        for (int i = 0; i < KEY_RANGE; i += 2) tree.emplace(i);
+        return new Target() {
+            public boolean contains(int key) { return tree.contains(key); }
+            public void emplace(int key) { tree.emplace(key); }
+            public void delete(int key) { tree.delete(key); }
+        };
+    }
+
+    private static Target skipList() {
+        ConcurrentSkipListMultiset<Integer> set = new ConcurrentSkipListMultiset<>();
+        for (int i = 0; i < KEY_RANGE; i += 2) set.emplace(i);
+        return new Target() {
+            public boolean contains(int key) { return set.contains(key); }
+            public void emplace(int key) { set.emplace(key); }
+            public void delete(int key) { set.delete(key); }
+        };
+    }
+
+    private static Target globalLock() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        for (int i = 0; i < KEY_RANGE; i += 2) tree.emplace(i);
+        return new Target() {
+            public synchronized boolean contains(int key) { return tree.contains(key); }
+            public synchronized void emplace(int key) { tree.emplace(key); }
+            public synchronized void delete(int key) { tree.delete(key); }
+        };
+    }
+
+    /*
+     * Returns the operations per second that threads threads managed together.
+     */
+    public static double measure(Target target, int threads, int readPercentage, long millis)
+            throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        long deadline = System.currentTimeMillis() + millis;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while ((done & 1023) != 0 || System.currentTimeMillis() < deadline) {
+                    int key = random.nextInt(KEY_RANGE);
+                    int dice = random.nextInt(100);
+                    if (dice < readPercentage) {
+                        target.contains(key);
+                    } else if ((dice & 1) == 0) {
+                        target.emplace(key);
+                    } else {
+                        target.delete(key);
+                    }
+                    done++;
+                }
+                operations.add(done);
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) worker.join();
+        return operations.sum() * 1000.0 / millis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) * 1000 : 2000;
+        System.out.println("===================Analysis Start===================");
+        System.out.println("Tree,ReadPercentage,Threads,OpsPerSecond");
+        for (int readPercentage : READ_PERCENTAGES) {
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                System.out.printf("optimistic,%d,%d,%.0f%n", readPercentage, threads,
+                        measure(optimistic(), threads, readPercentage, millis));
+                System.out.printf("global-lock,%d,%d,%.0f%n", readPercentage, threads,
+                        measure(globalLock(), threads, readPercentage, millis));
+                System.out.printf("skip-list,%d,%d,%.0f%n", readPercentage, threads,
+                        measure(skipList(), threads, readPercentage, millis));
+            }
+        }
+        System.out.println("===================Analysis Complete================");
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * A lock-free ordered multiset for workloads with many concurrent writers. It keeps
+ * RedBlackTree's duplicate semantics: equal keys share one entry with a count
+ * (nodesAtLocation), iteration returns a key once per duplicate, and delete removes one
+ * occurrence.
+ *
+ * The entries live in a ConcurrentSkipListMap, a lock-free skip list. Unlike a red black tree
+ * it never rebalances, so writers only touch the neighbours of their key and never contend
+ * on a path up to a root. Each entry's count is an AtomicInteger and changes with
+ * compare-and-set. A count of 0 means the entry is being unlinked. It never comes back to
+ * life: an emplace that finds a dead entry helps remove it and then adds a fresh one.
+ *
+ * Iteration is weakly consistent, like the skip list's: it never throws
+ * ConcurrentModificationException, and it sees every key that stays present for the whole
+ * scan, but it may or may not see concurrent changes.
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class ConcurrentSkipListMultiset<T extends Comparable<? super T>> implements Iterable<T> {
+
+    private final ConcurrentSkipListMap<T, AtomicInteger> entries;
+    private final LongAdder size; // distinct keys
+
+    public ConcurrentSkipListMultiset() {
+        this.entries = new ConcurrentSkipListMap<>();
+        this.size = new LongAdder();
+    }
+
+    /**
+     * Inserts data, or counts one more duplicate if it is already present.
+     */
+    public void emplace(T data) {
+        AtomicInteger count = this.entries.get(data);
+        while (true) {
+            if (count == null) {
+                count = this.entries.putIfAbsent(data, new AtomicInteger(1));
+                if (count == null) {
+                    this.size.increment();
+                    return;
+                }
+            }
+            if (increment(count)) return;
+            // the last occurrence was just deleted; finish unlinking it and start over
+            this.entries.remove(data, count);
+            count = null;
+        }
+    }
+
+    /**
+     * Removes one occurrence of key. The entry itself is unlinked once its last duplicate is
+     * gone.
+     */
+    public void delete(T key) {
+        AtomicInteger count = this.entries.get(key);
+        if (count == null) return; //no key to delete
+        while (true) {
+            int current = count.get();
+            if (current == 0) return; // a concurrent delete took the last occurrence
+            if (count.compareAndSet(current, current - 1)) {
+                if (current == 1) {
+                    this.size.decrement();
+                    this.entries.remove(key, count);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the stored key equal to key, or null.
+     */
+    public T find(T key) {
+        Map.Entry<T, AtomicInteger> entry = this.entries.ceilingEntry(key);
+        if (entry == null || entry.getValue().get() == 0 || entry.getKey().compareTo(key) != 0) return null;
+        return entry.getKey();
+    }
+
+    public boolean contains(T key) {
+        return getNodesAtLocation(key) > 0;
+    }
+
+    /**
+     * Returns how many times key is present, or 0.
+     */
+    public int getNodesAtLocation(T key) {
+        AtomicInteger count = this.entries.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns the number of distinct keys. While writers are running this is only an
+     * estimate, since the count is kept apart from the entries.
+     */
+    public int getSize() {
+        return (int) Math.max(0, this.size.sum());
+    }
+
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    /**
+     * Iterates the keys in ascending order, once per duplicate. Weakly consistent.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new KeyIterator(this.entries);
+    }
+
+    /**
+     * Iterates the keys in [from, to) in ascending order, once per duplicate. Weakly consistent.
+     * Like RedBlackTree.subSet, the upper bound is exclusive.
+     */
+    public Iterable<T> subSet(T from, T to) {
+        return subSet(from, true, to, false);
+    }
+
+    public Iterable<T> subSet(T from, boolean fromInclusive, T to, boolean toInclusive) {
+        if (from.compareTo(to) > 0) throw new IllegalArgumentException("from is greater than to");
+        return () -> new KeyIterator(this.entries.subMap(from, fromInclusive, to, toInclusive));
+    }
+
+    /**
+     * Passes every key in [from, to] to action in ascending order, once per duplicate.
+     */
+    public void forEachInRange(T from, T to, Consumer<? super T> action) {
+        for (T key : subSet(from, true, to, true)) {
+            action.accept(key);
+        }
+    }
+
+    /**
+     * Adds one to count unless it is 0, i.e. its entry is dead.
+     */
+    private static boolean increment(AtomicInteger count) {
+        while (true) {
+            int current = count.get();
+            if (current == 0) return false;
+            if (count.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /*
+     * Expands the entries into one key per duplicate, reading each count as it is reached.
+     */
+    private final class KeyIterator implements Iterator<T> {
+        private final Iterator<Map.Entry<T, AtomicInteger>> entries;
+        private T key;
+        private int duplicatesLeft;
+
+        KeyIterator(NavigableMap<T, AtomicInteger> entries) {
+            this.entries = entries.entrySet().iterator();
+            advance();
+        }
+
+        private void advance() {
+            this.key = null;
+            while (this.entries.hasNext()) {
+                Map.Entry<T, AtomicInteger> entry = this.entries.next();
+                int count = entry.getValue().get();
+                if (count > 0) {
+                    this.key = entry.getKey();
+                    this.duplicatesLeft = count;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.key != null;
+        }
+
+        @Override
+        public T next() {
+            if (this.key == null) throw new NoSuchElementException();
+            T key = this.key;
+            if (--this.duplicatesLeft == 0) advance();
+            return key;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Compares RedBlackTree.emplace() against finger insertion (emplaceNearLast()) on sorted,
+ * reverse sorted, clustered and random key streams. For each stream it prints the time and
+ * the number of key comparisons per insert as CSV.
+ *
+ * Usage: java FingerInsertionAnalysis [log2Keys]
+ */
+
+import java.util.Random;
+
+public class FingerInsertionAnalysis {
+
+    private static final int CLUSTER_SIZE = 64;
+
+    /*
+     * An int key that counts how often it is compared.
+     */
+    private static final class CountingKey implements Comparable<CountingKey> {
+        static long comparisons = 0;
+        final int value;
+
+        CountingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(CountingKey other) {
+            comparisons++;
+            return Integer.compare(this.value, other.value);
+        }
+    }
+
+    private static CountingKey[] sorted(int n) {
+        CountingKey[] keys = new CountingKey[n];
+        for (int i = 0; i < n; i++) keys[i] = new CountingKey(i);
+        return keys;
+    }
+
+    private static CountingKey[] reverseSorted(int n) {
+        CountingKey[] keys = new CountingKey[n];
+        for (int i = 0; i < n; i++) keys[i] = new CountingKey(n - i);
+        return keys;
+    }
+
+    /*
+     * Runs of CLUSTER_SIZE ascending keys, each run starting at a random place.
+     */
+    private static CountingKey[] clustered(int n) {
+        Random random = new Random(1);
+        CountingKey[] keys = new CountingKey[n];
+        int next = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % CLUSTER_SIZE == 0) next = random.nextInt(Integer.MAX_VALUE - CLUSTER_SIZE);
+            keys[i] = new CountingKey(next++);
+        }
+        return keys;
+    }
+
+    private static CountingKey[] random(int n) {
+        Random random = new Random(1);
+        CountingKey[] keys = new CountingKey[n];
+        for (int i = 0; i < n; i++) keys[i] = new CountingKey(random.nextInt());
+        return keys;
+    }
+
+    private static void measure(String stream, CountingKey[] keys) {
+        for (boolean finger : new boolean[] {false, true}) {
+            RedBlackTree<CountingKey> tree = new RedBlackTree<>();
+            CountingKey.comparisons = 0;
+            long start = System.nanoTime();
+            for (CountingKey key : keys) {
+                if (finger) {
+                    tree.emplaceNearLast(key);
+                } else {
+                    tree.emplace(key);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%s,%s,%d,%d,%.2f%n", stream, finger ? "finger" : "root", keys.length,
+                    elapsed / 1000000, (double) CountingKey.comparisons / keys.length);
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = 1 << (args.length > 0 ? Integer.parseInt(args[0]) : 20);
+        System.out.println("===================Analysis Start===================");
+        System.out.println("Stream,Insertion,Keys,Milliseconds,ComparisonsPerInsert");
+        measure("sorted", sorted(n));
+        measure("reverse-sorted", reverseSorted(n));
+        measure("clustered", clustered(n));
+        measure("random", random(n));
+        System.out.println("===================Analysis Complete================");
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * A red black tree of primitive int keys, with the same operations as RedBlackTree.
+ *
+ * Every node lives in parallel arrays (see PrimitiveRedBlackTree): an int key, two int child
+ * indices, an int duplicate count and a boolean color, which is 17 bytes per key against
+ * roughly 56 for a TreeNode holding a boxed Integer. Inserts and lookups never box and
+ * only allocate when the arrays grow.
+ */
+
+import java.util.Arrays;
+
+public class IntRedBlackTree extends PrimitiveRedBlackTree {
+
+    private int[] keys;
+
+    public IntRedBlackTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty tree with room for capacity distinct keys before the arrays grow.
+     */
+    public IntRedBlackTree(int capacity) {
+        super(capacity);
+        this.keys = new int[this.left.length];
+    }
+
+    @Override
+    void growKeys(int capacity) {
+        this.keys = Arrays.copyOf(this.keys, capacity);
+    }
+
+    @Override
+    void moveKey(int from, int to) {
+        this.keys[to] = this.keys[from];
+    }
+
+    /**
+     * Inserts key, or counts one more duplicate if it is already present.
+     */
+    public void emplace(int key) {
+        int depth = 0;
+        int current = this.root;
+        boolean goLeft = false;
+        while (current != NIL) {
+            int currentKey = this.keys[current];
+            if (key == currentKey) {
+                this.counts[current]++;
+                return;
+            }
+            this.path[depth++] = current;
+            goLeft = key < currentKey;
+            current = goLeft ? this.left[current] : this.right[current];
+        }
+        int node = allocate();
+        this.keys[node] = key;
+        insertNode(node, depth, goLeft);
+    }
+
+    /**
+     * Removes one occurrence of key.
+     */
+    public void delete(int key) {
+        int depth = 0;
+        int current = this.root;
+        while (current != NIL) {
+            int currentKey = this.keys[current];
+            this.path[depth] = current;
+            if (key == currentKey) {
+                removeAt(depth);
+                return;
+            }
+            depth++;
+            current = key < currentKey ? this.left[current] : this.right[current];
+        }
+    }
+
+    /**
+     * Returns the node holding key, or NOT_FOUND. The node is only valid until the next
+     * emplace or delete.
+     */
+    public int find(int key) {
+        int current = this.root;
+        while (current != NIL) {
+            int currentKey = this.keys[current];
+            if (key == currentKey) return current;
+            current = key < currentKey ? this.left[current] : this.right[current];
+        }
+        return NOT_FOUND;
+    }
+
+    public boolean contains(int key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    /**
+     * Returns the key stored at a node returned by find().
+     */
+    public int getKey(int node) {
+        return this.keys[node];
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * An interval tree on top of RedBlackTree. Intervals are half-open, [start, end), and are
+ * ordered by start and then by end. Every node also caches the largest end in its subtree,
+ * which the tree keeps up to date through inserts, rotations and deletes. A query can then
+ * skip any subtree whose largest end lies before the query, and it can stop as soon as it
+ * reaches a start past the query.
+ *
+ * Queries are streamed: overlapping() and stabbing() return iterators that find the next
+ * match only when it is asked for, in ascending order, in O(log n) per match. Equal
+ * intervals are stored once and reported once per duplicate, like keys in RedBlackTree.
+ *
+ * A query reporting k intervals therefore takes O(min(n, (k + 1) log n)), not the
+ * O(log n + k) of a priority search tree or a centered interval tree. Between two matches
+ * the walk may have to climb out of one subtree and down another whose largest end still
+ * reaches the query. Meeting the tighter bound needs a second order on the ends that a
+ * rotation cannot repair in O(1), which does not fit a max-end augmentation of RedBlackTree.
+ * When matches are dense the walk is close to O(log n + k) anyway.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+public class IntervalTree<P extends Comparable<? super P>> implements Iterable<IntervalTree.Interval<P>> {
+
+    private final RedBlackTree<Interval<P>> tree;
+
+    public IntervalTree() {
+        this.tree = new RedBlackTree<>();
+    }
+
+    /**
+     * Inserts the interval [start, end).
+     */
+    public void emplace(P start, P end) {
+        emplace(new Interval<>(start, end));
+    }
+
+    public void emplace(Interval<P> interval) {
+        this.tree.insert(new IntervalNode<>(interval));
+    }
+
+    /**
+     * Removes one occurrence of interval.
+     */
+    public void delete(Interval<P> interval) {
+        this.tree.delete(interval);
+    }
+
+    public boolean contains(Interval<P> interval) {
+        return this.tree.contains(interval);
+    }
+
+    /**
+     * Returns the number of distinct intervals.
+     */
+    public int getSize() {
+        return this.tree.getSize();
+    }
+
+    public boolean isEmpty() {
+        return this.tree.getRoot() == null;
+    }
+
+    public int getHeight() {
+        return this.tree.getHeight();
+    }
+
+    /**
+     * Returns the largest end of any interval, or null if the tree is empty.
+     */
+    public P getMaxEnd() {
+        IntervalNode<P> root = (IntervalNode<P>) this.tree.getRoot();
+        return root == null ? null : root.maxEnd;
+    }
+
+    /**
+     * Iterates all intervals ordered by start, then end.
+     */
+    @Override
+    public Iterator<Interval<P>> iterator() {
+        return this.tree.iterator();
+    }
+
+    /**
+     * Iterates the intervals that share at least one point with the closed range [from, to],
+     * i.e. those with start <= to and end > from, ordered by start.
+     */
+    public Iterator<Interval<P>> overlapping(P from, P to) {
+        if (from.compareTo(to) > 0) {
+            throw new IllegalArgumentException("from is greater than to");
+        }
+        return new OverlapIterator(from, to);
+    }
+
+    /**
+     * Iterates the intervals containing point, i.e. those with start <= point < end.
+     */
+    public Iterator<Interval<P>> stabbing(P point) {
+        return new OverlapIterator(point, point);
+    }
+
+    /**
+     * A pruned in-order walk. Only nodes whose subtree reaches past from are ever pushed, and
+     * the walk ends at the first node that starts after to, since every later node does too.
+     */
+    private final class OverlapIterator implements Iterator<Interval<P>> {
+        private final P from;
+        private final P to;
+        private final ArrayDeque<IntervalNode<P>> stack = new ArrayDeque<>();
+        private IntervalNode<P> next;
+        private int duplicatesLeft; // further copies of next still to return
+
+        OverlapIterator(P from, P to) {
+            this.from = from;
+            this.to = to;
+            descend((IntervalNode<P>) IntervalTree.this.tree.getRoot());
+            advance();
+        }
+
+        private void descend(IntervalNode<P> node) {
+            while (node != null && node.maxEnd.compareTo(this.from) > 0) {
+                this.stack.push(node);
+                node = (IntervalNode<P>) node.getLeftChild();
+            }
+        }
+
+        private void advance() {
+            this.next = null;
+            while (!this.stack.isEmpty()) {
+                IntervalNode<P> node = this.stack.pop();
+                Interval<P> interval = node.getData();
+                if (interval.start.compareTo(this.to) > 0) {
+                    this.stack.clear();
+                    return;
+                }
+                descend((IntervalNode<P>) node.getRightChild());
+                if (interval.end.compareTo(this.from) > 0) {
+                    this.next = node;
+                    this.duplicatesLeft = node.getNodesAtLocation();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Interval<P> next() {
+            if (this.next == null) throw new NoSuchElementException();
+            Interval<P> interval = this.next.getData();
+            if (--this.duplicatesLeft == 0) advance();
+            return interval;
+        }
+    }
+
+    /**
+     * A tree node that also caches the largest end in its subtree.
+     */
+    private static final class IntervalNode<P extends Comparable<? super P>> extends RedBlackTree.TreeNode<Interval<P>> {
+        private P maxEnd;
+
+        IntervalNode(Interval<P> interval) {
+            super(interval, true);
+            this.maxEnd = interval.end;
+        }
+
+        @Override
+        void updateSubtreeSize() {
+            super.updateSubtreeSize();
+            P max = getData().end;
+            IntervalNode<P> left = (IntervalNode<P>) getLeftChild();
+            IntervalNode<P> right = (IntervalNode<P>) getRightChild();
+            if (left != null && left.maxEnd.compareTo(max) > 0) max = left.maxEnd;
+            if (right != null && right.maxEnd.compareTo(max) > 0) max = right.maxEnd;
+            this.maxEnd = max;
+        }
+    }
+
+    /**
+     * The half-open interval [start, end). Intervals compare by start, then by end.
+     */
+    public static final class Interval<P extends Comparable<? super P>> implements Comparable<Interval<P>> {
+        private final P start;
+        private final P end;
+
+        public Interval(P start, P end) {
+            if (start.compareTo(end) > 0) {
+                throw new IllegalArgumentException("start is greater than end");
+            }
+            this.start = start;
+            this.end = end;
+        }
+
+        public P getStart() {
+            return this.start;
+        }
+
+        public P getEnd() {
+            return this.end;
+        }
+
+        /**
+         * Returns whether this interval shares a point with the closed range [from, to].
+         */
+        public boolean overlaps(P from, P to) {
+            return this.start.compareTo(to) <= 0 && this.end.compareTo(from) > 0;
+        }
+
+        public boolean contains(P point) {
+            return overlaps(point, point);
+        }
+
+        @Override
+        public int compareTo(Interval<P> other) {
+            int comparison = this.start.compareTo(other.start);
+            return comparison != 0 ? comparison : this.end.compareTo(other.end);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Interval)) return false;
+            Interval<?> interval = (Interval<?>) other;
+            return this.start.equals(interval.start) && this.end.equals(interval.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.start, this.end);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + this.start + ", " + this.end + ")";
+        }
+    }
+}
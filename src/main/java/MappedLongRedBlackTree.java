@@ -0,0 +1,536 @@
+/**
+ * A red black tree of long keys that lives in a memory-mapped file instead of the Java heap,
+ * for indexes too large for RedBlackTree or LongRedBlackTree. Reopening the file maps it
+ * back in without rebuilding anything.
+ *
+ * The file is an array of fixed-size 32 byte records. Record 0 and 1 hold the header, and
+ * every other record is one node:
+ *
+ *   bytes  0-7   key
+ *   bytes  8-15  left child (0 means NIL)
+ *   bytes 16-23  right child (0 means NIL)
+ *   bytes 24-27  duplicate count
+ *   bytes 28-31  color (1 is red)
+ *
+ * Like PrimitiveRedBlackTree, nodes keep no parent link; insert and delete record the path
+ * from the root and rebalance back up along it. Deleted records are chained into a free list
+ * through their left child. The file is mapped in chunks, since a single MappedByteBuffer
+ * cannot exceed 2GB. Only the mapped length is allocated: the last chunk starts small and is
+ * remapped at twice the size as the tree grows, until it is full and a new one starts.
+ *
+ * Writes go straight to the mapping, so the operating system persists them even if the JVM
+ * dies. flush() forces them to the storage device; a machine crash between flushes can lose
+ * or tear the writes made since the last one.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+public class MappedLongRedBlackTree implements Closeable {
+
+    public static final long NOT_FOUND = -1;
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 30;
+    private static final long INITIAL_MAPPED_BYTES = 1 << 16;
+
+    private static final long MAGIC = 0x52424D4150504544L; // "RBMAPPED"
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 32;
+    private static final long NIL = 0;
+    private static final long FIRST_NODE = 2; // records 0 and 1 are the header
+    private static final int MAX_PATH = 128; // 2 log(n + 1) for any n that fits in a file
+
+    // header offsets
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int ROOT_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int NEXT_SLOT_OFFSET = 32;
+    private static final int FREE_HEAD_OFFSET = 40;
+
+    // node record offsets
+    private static final int KEY = 0;
+    private static final int LEFT = 8;
+    private static final int RIGHT = 16;
+    private static final int COUNT = 24;
+    private static final int COLOR = 28;
+
+    private final FileChannel channel;
+    private final int chunkBytes;
+    private MappedByteBuffer[] chunks;
+    private long mappedBytes;
+    private final long[] path;
+    private long root;
+    private long size;
+    private long nextSlot;
+    private long freeHead;
+
+    /**
+     * Opens the tree stored in file, creating an empty one if the file does not exist.
+     */
+    public MappedLongRedBlackTree(Path file) throws IOException {
+        this(file, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Same as MappedLongRedBlackTree(file), mapping chunkBytes at a time. chunkBytes must be a
+     * multiple of 32 and at least 64, so that the first chunk holds the two header records.
+     */
+    public MappedLongRedBlackTree(Path file, int chunkBytes) throws IOException {
+        if (chunkBytes < FIRST_NODE * RECORD_BYTES || chunkBytes % RECORD_BYTES != 0) {
+            throw new IllegalArgumentException("Chunk size must be a multiple of " + RECORD_BYTES + " and at least "
+                    + FIRST_NODE * RECORD_BYTES);
+        }
+        this.chunkBytes = chunkBytes;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.path = new long[MAX_PATH];
+        this.chunks = new MappedByteBuffer[0];
+        long fileSize = this.channel.size();
+        map(Math.max(Math.min(INITIAL_MAPPED_BYTES, chunkBytes), fileSize));
+
+        MappedByteBuffer header = this.chunks[0];
+        if (fileSize == 0) {
+            this.root = NIL;
+            this.size = 0;
+            this.nextSlot = FIRST_NODE;
+            this.freeHead = NIL;
+            header.putLong(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, VERSION);
+            writeHeader();
+        } else {
+            if (header.getLong(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+                this.channel.close();
+                throw new IOException(file + " is not a mapped red black tree");
+            }
+            this.root = header.getLong(ROOT_OFFSET);
+            this.size = header.getLong(SIZE_OFFSET);
+            this.nextSlot = header.getLong(NEXT_SLOT_OFFSET);
+            this.freeHead = header.getLong(FREE_HEAD_OFFSET);
+        }
+    }
+
+    /**
+     * Maps the first bytes of the file, growing it if needed. Every chunk but the last is
+     * chunkBytes long; the last is remapped whenever its length changes.
+     */
+    private void map(long bytes) throws IOException {
+        long count = (bytes + this.chunkBytes - 1) / this.chunkBytes;
+        if (count > Integer.MAX_VALUE) throw new IOException("Tree file is too large");
+        MappedByteBuffer[] mapped = Arrays.copyOf(this.chunks, (int) count);
+        for (int i = Math.max(0, this.chunks.length - 1); i < count; i++) {
+            long offset = (long) i * this.chunkBytes;
+            long length = Math.min(this.chunkBytes, bytes - offset);
+            if (i < this.chunks.length && this.chunks[i].capacity() == length) continue;
+            // mapping past the end of the file grows it
+            mapped[i] = this.channel.map(FileChannel.MapMode.READ_WRITE, offset, length);
+        }
+        this.chunks = mapped;
+        this.mappedBytes = bytes;
+    }
+
+    private void writeHeader() {
+        MappedByteBuffer header = this.chunks[0];
+        header.putLong(ROOT_OFFSET, this.root);
+        header.putLong(SIZE_OFFSET, this.size);
+        header.putLong(NEXT_SLOT_OFFSET, this.nextSlot);
+        header.putLong(FREE_HEAD_OFFSET, this.freeHead);
+    }
+
+    /**
+     * Forces all writes to the storage device.
+     */
+    public void flush() {
+        for (MappedByteBuffer chunk : this.chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Flushes and closes the file. The mapping itself is released once it is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        this.chunks = new MappedByteBuffer[0];
+        this.channel.close();
+    }
+
+    /* RECORD ACCESS */
+
+    private MappedByteBuffer chunk(long node) {
+        return this.chunks[(int) (node * RECORD_BYTES / this.chunkBytes)];
+    }
+
+    private int offset(long node, int field) {
+        return (int) (node * RECORD_BYTES % this.chunkBytes) + field;
+    }
+
+    private long getKey(long node) {
+        return chunk(node).getLong(offset(node, KEY));
+    }
+
+    private void setKey(long node, long key) {
+        chunk(node).putLong(offset(node, KEY), key);
+    }
+
+    private long getLeft(long node) {
+        return chunk(node).getLong(offset(node, LEFT));
+    }
+
+    private void setLeft(long node, long child) {
+        chunk(node).putLong(offset(node, LEFT), child);
+    }
+
+    private long getRight(long node) {
+        return chunk(node).getLong(offset(node, RIGHT));
+    }
+
+    private void setRight(long node, long child) {
+        chunk(node).putLong(offset(node, RIGHT), child);
+    }
+
+    private int getCount(long node) {
+        return chunk(node).getInt(offset(node, COUNT));
+    }
+
+    private void setCount(long node, int count) {
+        chunk(node).putInt(offset(node, COUNT), count);
+    }
+
+    private boolean isRed(long node) {
+        return node != NIL && chunk(node).getInt(offset(node, COLOR)) == 1;
+    }
+
+    private void setRed(long node, boolean red) {
+        if (node != NIL) chunk(node).putInt(offset(node, COLOR), red ? 1 : 0);
+    }
+
+    private long allocate() throws IOException {
+        long node;
+        if (this.freeHead != NIL) {
+            node = this.freeHead;
+            this.freeHead = getLeft(node);
+        } else {
+            node = this.nextSlot++;
+            long needed = (node + 1) * RECORD_BYTES;
+            if (needed > this.mappedBytes) {
+                // double, but never past the end of the current chunk, so its length stays a multiple of RECORD_BYTES
+                long chunkEnd = (this.mappedBytes + this.chunkBytes - 1) / this.chunkBytes * this.chunkBytes;
+                long grown = Math.min(2 * this.mappedBytes, chunkEnd);
+                map(grown >= needed ? grown : chunkEnd + Math.min(this.chunkBytes, INITIAL_MAPPED_BYTES));
+            }
+        }
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setCount(node, 1);
+        setRed(node, true);
+        return node;
+    }
+
+    private void free(long node) {
+        setLeft(node, this.freeHead);
+        setRight(node, NIL);
+        setCount(node, 0);
+        this.freeHead = node;
+    }
+
+    /* QUERIES */
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the node holding key, or NOT_FOUND. The node is only valid until the next
+     * emplace or delete.
+     */
+    public long find(long key) {
+        long current = this.root;
+        while (current != NIL) {
+            long currentKey = getKey(current);
+            if (key == currentKey) return current;
+            current = key < currentKey ? getLeft(current) : getRight(current);
+        }
+        return NOT_FOUND;
+    }
+
+    public boolean contains(long key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    public long getNodeKey(long node) {
+        return getKey(node);
+    }
+
+    public int getNodesAtLocation(long node) {
+        return getCount(node);
+    }
+
+    public int getHeight() {
+        return getHeightHelper(this.root);
+    }
+
+    private int getHeightHelper(long node) {
+        if (node == NIL) return 0;
+        return Math.max(getHeightHelper(getLeft(node)), getHeightHelper(getRight(node))) + 1;
+    }
+
+    /**
+     * Passes every key to action in ascending order, once per duplicate.
+     */
+    public void forEach(LongConsumer action) {
+        forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, action);
+    }
+
+    /**
+     * Passes every key in [from, to] to action in ascending order, once per duplicate. Uses
+     * an explicit stack of at most MAX_PATH nodes, since nodes have no parent links.
+     */
+    public void forEachInRange(long from, long to, LongConsumer action) {
+        long[] stack = new long[MAX_PATH];
+        int depth = 0;
+        long current = this.root;
+        // push the path to the first key >= from; only nodes we still have to visit go on the stack
+        while (current != NIL) {
+            if (getKey(current) >= from) {
+                stack[depth++] = current;
+                current = getLeft(current);
+            } else {
+                current = getRight(current);
+            }
+        }
+        while (depth > 0) {
+            long node = stack[--depth];
+            long key = getKey(node);
+            if (key > to) return;
+            for (int i = getCount(node); i > 0; i--) {
+                action.accept(key);
+            }
+            for (current = getRight(node); current != NIL; current = getLeft(current)) {
+                stack[depth++] = current;
+            }
+        }
+    }
+
+    /* UPDATES */
+
+    /**
+     * Inserts key, or counts one more duplicate if it is already present.
+     */
+    public void emplace(long key) throws IOException {
+        int depth = 0;
+        long current = this.root;
+        boolean goLeft = false;
+        while (current != NIL) {
+            long currentKey = getKey(current);
+            if (key == currentKey) {
+                setCount(current, getCount(current) + 1);
+                return;
+            }
+            this.path[depth++] = current;
+            goLeft = key < currentKey;
+            current = goLeft ? getLeft(current) : getRight(current);
+        }
+        long node = allocate();
+        setKey(node, key);
+        if (depth == 0) {
+            this.root = node;
+        } else if (goLeft) {
+            setLeft(this.path[depth - 1], node);
+        } else {
+            setRight(this.path[depth - 1], node);
+        }
+        this.path[depth] = node;
+        this.size++;
+        insertFixup(depth);
+        writeHeader();
+    }
+
+    private void insertFixup(int depth) {
+        long node = this.path[depth];
+        while (depth >= 2 && isRed(this.path[depth - 1])) {
+            long parent = this.path[depth - 1];
+            long grandparent = this.path[depth - 2]; // a red parent is never the root
+            long greatGrandparent = depth >= 3 ? this.path[depth - 3] : NIL;
+            boolean parentIsLeft = parent == getLeft(grandparent);
+            long ommer = parentIsLeft ? getRight(grandparent) : getLeft(grandparent);
+            if (isRed(ommer)) {
+                // recolor and move the violation upward
+                setRed(parent, false);
+                setRed(ommer, false);
+                setRed(grandparent, true);
+                node = grandparent;
+                depth -= 2;
+                continue;
+            }
+            if (parentIsLeft) {
+                if (node == getRight(parent)) { // converts left->right case to left->left
+                    rotateLeft(parent, grandparent);
+                    parent = node;
+                }
+                setRed(parent, false);
+                setRed(grandparent, true);
+                rotateRight(grandparent, greatGrandparent);
+            } else {
+                if (node == getLeft(parent)) { // converts right->left case to right->right
+                    rotateRight(parent, grandparent);
+                    parent = node;
+                }
+                setRed(parent, false);
+                setRed(grandparent, true);
+                rotateLeft(grandparent, greatGrandparent);
+            }
+            break;
+        }
+        setRed(this.root, false);
+    }
+
+    /**
+     * Removes one occurrence of key. The record is freed once its last duplicate is gone.
+     */
+    public void delete(long key) {
+        int depth = 0;
+        long node = this.root;
+        while (node != NIL) {
+            long currentKey = getKey(node);
+            this.path[depth] = node;
+            if (key == currentKey) break;
+            depth++;
+            node = key < currentKey ? getLeft(node) : getRight(node);
+        }
+        if (node == NIL) return; //no key to delete
+        if (getCount(node) > 1) {
+            setCount(node, getCount(node) - 1);
+            return;
+        }
+
+        if (getLeft(node) != NIL && getRight(node) != NIL) {
+            // move the in-order successor's key here and unlink the successor instead
+            long successor = getRight(node);
+            this.path[++depth] = successor;
+            while (getLeft(successor) != NIL) {
+                successor = getLeft(successor);
+                this.path[++depth] = successor;
+            }
+            setKey(node, getKey(successor));
+            setCount(node, getCount(successor));
+            node = successor;
+        }
+
+        long child = getLeft(node) != NIL ? getLeft(node) : getRight(node);
+        if (depth == 0) {
+            this.root = child;
+        } else if (getLeft(this.path[depth - 1]) == node) {
+            setLeft(this.path[depth - 1], child);
+        } else {
+            setRight(this.path[depth - 1], child);
+        }
+        this.path[depth] = child;
+        if (!isRed(node)) {
+            deleteFixup(depth);
+        }
+        free(node);
+        this.size--;
+        writeHeader();
+    }
+
+    /**
+     * path[depth] carries an extra black (it may be NIL). Push it up until it lands on a red
+     * node or the root, rotating where a sibling can absorb it.
+     */
+    private void deleteFixup(int depth) {
+        long node = this.path[depth];
+        while (depth > 0 && !isRed(node)) {
+            long parent = this.path[depth - 1];
+            long grandparent = depth >= 2 ? this.path[depth - 2] : NIL;
+            boolean nodeIsLeft = node == getLeft(parent);
+            long sibling = nodeIsLeft ? getRight(parent) : getLeft(parent);
+            if (isRed(sibling)) {
+                setRed(sibling, false);
+                setRed(parent, true);
+                if (nodeIsLeft) {
+                    rotateLeft(parent, grandparent);
+                } else {
+                    rotateRight(parent, grandparent);
+                }
+                // sibling is now between grandparent and parent on the path
+                this.path[depth - 1] = sibling;
+                this.path[depth] = parent;
+                this.path[++depth] = node;
+                grandparent = sibling;
+                sibling = nodeIsLeft ? getRight(parent) : getLeft(parent);
+            }
+            long near = nodeIsLeft ? getLeft(sibling) : getRight(sibling);
+            long far = nodeIsLeft ? getRight(sibling) : getLeft(sibling);
+            if (!isRed(near) && !isRed(far)) {
+                setRed(sibling, true);
+                node = parent;
+                depth--;
+                continue;
+            }
+            if (!isRed(far)) {
+                setRed(near, false);
+                setRed(sibling, true);
+                if (nodeIsLeft) {
+                    rotateRight(sibling, parent);
+                } else {
+                    rotateLeft(sibling, parent);
+                }
+                far = sibling;
+                sibling = near;
+            }
+            setRed(sibling, isRed(parent));
+            setRed(parent, false);
+            setRed(far, false);
+            if (nodeIsLeft) {
+                rotateLeft(parent, grandparent);
+            } else {
+                rotateRight(parent, grandparent);
+            }
+            node = this.root;
+            break;
+        }
+        setRed(node, false);
+    }
+
+    /**
+     * Textbook left rotation: node becomes the LEFT child of its RIGHT child. parent is the
+     * node's parent, or NIL if node is the root.
+     */
+    private void rotateLeft(long node, long parent) {
+        long pivot = getRight(node);
+        setRight(node, getLeft(pivot));
+        setLeft(pivot, node);
+        replaceChild(parent, node, pivot);
+    }
+
+    /**
+     * Textbook right rotation: node becomes the RIGHT child of its LEFT child.
+     */
+    private void rotateRight(long node, long parent) {
+        long pivot = getLeft(node);
+        setLeft(node, getRight(pivot));
+        setRight(pivot, node);
+        replaceChild(parent, node, pivot);
+    }
+
+    private void replaceChild(long parent, long oldChild, long newChild) {
+        if (parent == NIL) {
+            this.root = newChild;
+        } else if (getLeft(parent) == oldChild) {
+            setLeft(parent, newChild);
+        } else {
+            setRight(parent, newChild);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * A persistent red black tree: emplace and delete never change an existing node. They copy
+ * the O(log n) nodes on the path to the key and share every other node with the previous
+ * version, so older versions stay intact for as long as someone holds on to them.
+ *
+ * snapshot() hands out the current version in O(1). A Snapshot never changes, so readers
+ * can search and iterate it without any locking while writers carry on. Writers are
+ * serialized among themselves.
+ *
+ * Unlike RedBlackTree.TreeNode, nodes have no parent pointer, since a shared node has a
+ * different parent in every version. The rebalancing is the functional insert and delete
+ * from Stefan Kahrs, "Red-black trees with types" (2001).
+ */
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class PersistentRedBlackTree<T extends Comparable<? super T>> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private volatile Snapshot<T> current;
+
+    public PersistentRedBlackTree() {
+        this.current = new Snapshot<>(null, 0);
+    }
+
+    /**
+     * Returns the current version of the tree in O(1).
+     */
+    public Snapshot<T> snapshot() {
+        return this.current;
+    }
+
+    /**
+     * Inserts data, or counts one more duplicate if it is already present, and returns the
+     * new version.
+     */
+    public synchronized Snapshot<T> emplace(T data) {
+        Snapshot<T> old = this.current;
+        int size = old.contains(data) ? old.size : old.size + 1;
+        this.current = new Snapshot<>(blacken(insert(old.root, data)), size);
+        return this.current;
+    }
+
+    /**
+     * Removes one occurrence of key and returns the new version. The node itself goes once
+     * its last duplicate is gone.
+     */
+    public synchronized Snapshot<T> delete(T key) {
+        Snapshot<T> old = this.current;
+        Node<T> node = find(old.root, key);
+        if (node == null) return old; //no key to delete
+        if (node.nodesAtLocation > 1) {
+            this.current = new Snapshot<>(decrement(old.root, key), old.size);
+        } else {
+            this.current = new Snapshot<>(blacken(remove(old.root, key)), old.size - 1);
+        }
+        return this.current;
+    }
+
+    public T find(T key) {
+        return this.current.find(key);
+    }
+
+    public boolean contains(T key) {
+        return this.current.contains(key);
+    }
+
+    public int getSize() {
+        return this.current.getSize();
+    }
+
+    /**
+     * One immutable version of the tree.
+     */
+    public static class Snapshot<T extends Comparable<? super T>> implements Iterable<T> {
+        private final Node<T> root;
+        private final int size;
+
+        private Snapshot(Node<T> root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * Returns the stored key equal to key, or null.
+         */
+        public T find(T key) {
+            Node<T> node = PersistentRedBlackTree.find(this.root, key);
+            return node == null ? null : node.data;
+        }
+
+        public boolean contains(T key) {
+            return PersistentRedBlackTree.find(this.root, key) != null;
+        }
+
+        public int getNodesAtLocation(T key) {
+            Node<T> node = PersistentRedBlackTree.find(this.root, key);
+            return node == null ? 0 : node.nodesAtLocation;
+        }
+
+        /**
+         * Returns the number of distinct keys.
+         */
+        public int getSize() {
+            return this.size;
+        }
+
+        public int getHeight() {
+            return getHeightHelper(this.root);
+        }
+
+        private int getHeightHelper(Node<T> node) {
+            if (node == null) return 0;
+            return Math.max(getHeightHelper(node.left), getHeightHelper(node.right)) + 1;
+        }
+
+        /**
+         * Iterates the keys in ascending order, once per duplicate. Needs O(log n) memory for
+         * the stack of pending nodes.
+         */
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+                private Node<T> node = null;
+                private int remaining = 0; // duplicates of node still to return
+
+                {
+                    pushLeftSpine(Snapshot.this.root);
+                }
+
+                private void pushLeftSpine(Node<T> next) {
+                    for (; next != null; next = next.left) {
+                        this.stack.push(next);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return this.remaining > 0 || !this.stack.isEmpty();
+                }
+
+                @Override
+                public T next() {
+                    if (this.remaining == 0) {
+                        if (this.stack.isEmpty()) throw new NoSuchElementException();
+                        this.node = this.stack.pop();
+                        this.remaining = this.node.nodesAtLocation;
+                        pushLeftSpine(this.node.right);
+                    }
+                    this.remaining--;
+                    return this.node.data;
+                }
+            };
+        }
+    }
+
+    /**
+     * An immutable tree node.
+     */
+    private static final class Node<T extends Comparable<? super T>> {
+        private final T data;
+        private final int nodesAtLocation; // for storing duplicates
+        private final boolean red;
+        private final Node<T> left;
+        private final Node<T> right;
+
+        Node(T data, int nodesAtLocation, boolean red, Node<T> left, Node<T> right) {
+            this.data = data;
+            this.nodesAtLocation = nodesAtLocation;
+            this.red = red;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private static <T extends Comparable<? super T>> Node<T> find(Node<T> node, T key) {
+        while (node != null) {
+            int comparison = key.compareTo(node.data);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies key's node (data and duplicate count) with new color and children.
+     */
+    private static <T extends Comparable<? super T>> Node<T> make(boolean red, Node<T> left, Node<T> key,
+            Node<T> right) {
+        return new Node<>(key.data, key.nodesAtLocation, red, left, right);
+    }
+
+    private static boolean isRed(Node<?> node) {
+        return node != null && node.red;
+    }
+
+    private static boolean isBlackNode(Node<?> node) {
+        return node != null && !node.red;
+    }
+
+    private static <T extends Comparable<? super T>> Node<T> blacken(Node<T> node) {
+        return isRed(node) ? make(BLACK, node.left, node, node.right) : node;
+    }
+
+    private static <T extends Comparable<? super T>> Node<T> redden(Node<T> node) {
+        if (!isBlackNode(node)) throw new IllegalStateException("Red black invariant violated");
+        return make(RED, node.left, node, node.right);
+    }
+
+    /**
+     * Builds a node from left, key and right, turning any red-red pair among them into a red
+     * node with two black children. Without a red-red pair the result is a black node.
+     */
+    private static <T extends Comparable<? super T>> Node<T> balance(Node<T> left, Node<T> key, Node<T> right) {
+        if (isRed(left) && isRed(right)) {
+            return make(RED, blacken(left), key, blacken(right));
+        } else if (isRed(left) && isRed(left.left)) {
+            return make(RED, blacken(left.left), left, make(BLACK, left.right, key, right));
+        } else if (isRed(left) && isRed(left.right)) {
+            return make(RED, make(BLACK, left.left, left, left.right.left), left.right,
+                    make(BLACK, left.right.right, key, right));
+        } else if (isRed(right) && isRed(right.right)) {
+            return make(RED, make(BLACK, left, key, right.left), right, blacken(right.right));
+        } else if (isRed(right) && isRed(right.left)) {
+            return make(RED, make(BLACK, left, key, right.left.left), right.left,
+                    make(BLACK, right.left.right, right, right.right));
+        }
+        return make(BLACK, left, key, right);
+    }
+
+    private static <T extends Comparable<? super T>> Node<T> insert(Node<T> node, T data) {
+        if (node == null) return new Node<>(data, 1, RED, null, null);
+        int comparison = data.compareTo(node.data);
+        if (comparison == 0) {
+            return new Node<>(node.data, node.nodesAtLocation + 1, node.red, node.left, node.right);
+        } else if (node.red) {
+            // a red node has black children, so a red-red pair is left for the black parent
+            return comparison < 0 ? make(RED, insert(node.left, data), node, node.right)
+                    : make(RED, node.left, node, insert(node.right, data));
+        } else {
+            return comparison < 0 ? balance(insert(node.left, data), node, node.right)
+                    : balance(node.left, node, insert(node.right, data));
+        }
+    }
+
+    /**
+     * Path-copies the tree with one duplicate of key (which must have more than one) removed.
+     */
+    private static <T extends Comparable<? super T>> Node<T> decrement(Node<T> node, T key) {
+        int comparison = key.compareTo(node.data);
+        if (comparison < 0) return make(node.red, decrement(node.left, key), node, node.right);
+        if (comparison > 0) return make(node.red, node.left, node, decrement(node.right, key));
+        return new Node<>(node.data, node.nodesAtLocation - 1, node.red, node.left, node.right);
+    }
+
+    /**
+     * Removes key's node, which must be present. Deleting from a black subtree lowers its
+     * black height by one, which removeFromLeft and removeFromRight repair on the way up.
+     */
+    private static <T extends Comparable<? super T>> Node<T> remove(Node<T> node, T key) {
+        int comparison = key.compareTo(node.data);
+        if (comparison < 0) {
+            if (isBlackNode(node.left)) return balanceLeft(remove(node.left, key), node, node.right);
+            return make(RED, remove(node.left, key), node, node.right);
+        } else if (comparison > 0) {
+            if (isBlackNode(node.right)) return balanceRight(node.left, node, remove(node.right, key));
+            return make(RED, node.left, node, remove(node.right, key));
+        }
+        return append(node.left, node.right);
+    }
+
+    /**
+     * Rebuilds a node whose left subtree is one black level short.
+     */
+    private static <T extends Comparable<? super T>> Node<T> balanceLeft(Node<T> left, Node<T> key, Node<T> right) {
+        if (isRed(left)) {
+            return make(RED, blacken(left), key, right);
+        } else if (isBlackNode(right)) {
+            return balance(left, key, redden(right));
+        } else if (isRed(right) && isBlackNode(right.left)) {
+            return make(RED, make(BLACK, left, key, right.left.left), right.left,
+                    balance(right.left.right, right, redden(right.right)));
+        }
+        throw new IllegalStateException("Red black invariant violated");
+    }
+
+    /**
+     * Rebuilds a node whose right subtree is one black level short.
+     */
+    private static <T extends Comparable<? super T>> Node<T> balanceRight(Node<T> left, Node<T> key, Node<T> right) {
+        if (isRed(right)) {
+            return make(RED, left, key, blacken(right));
+        } else if (isBlackNode(left)) {
+            return balance(redden(left), key, right);
+        } else if (isRed(left) && isBlackNode(left.right)) {
+            return make(RED, balance(redden(left.left), left, left.right.left), left.right,
+                    make(BLACK, left.right.right, key, right));
+        }
+        throw new IllegalStateException("Red black invariant violated");
+    }
+
+    /**
+     * Merges two subtrees of equal black height whose keys are ordered left before right.
+     */
+    private static <T extends Comparable<? super T>> Node<T> append(Node<T> left, Node<T> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.red && right.red) {
+            Node<T> middle = append(left.right, right.left);
+            if (isRed(middle)) {
+                return make(RED, make(RED, left.left, left, middle.left), middle,
+                        make(RED, middle.right, right, right.right));
+            }
+            return make(RED, left.left, left, make(RED, middle, right, right.right));
+        } else if (!left.red && !right.red) {
+            Node<T> middle = append(left.right, right.left);
+            if (isRed(middle)) {
+                return make(RED, make(BLACK, left.left, left, middle.left), middle,
+                        make(BLACK, middle.right, right, right.right));
+            }
+            return balanceLeft(left.left, left, make(BLACK, middle, right, right.right));
+        } else if (right.red) {
+            return make(RED, append(left, right.left), right, right.right);
+        }
+        return make(RED, left.left, left, append(left.right, right));
+    }
+}
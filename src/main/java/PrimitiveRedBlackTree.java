@@ -0,0 +1,332 @@
+/**
+ * Shared storage and rebalancing for the array-backed red black trees (IntRedBlackTree and
+ * LongRedBlackTree). A node is a slot index into parallel primitive arrays instead of an
+ * object, so there is no object header, no boxed key and no pointer per node. Slot 0 is the
+ * black NIL sentinel.
+ *
+ * Nodes keep no parent index. Insert and delete record the path from the root in a reusable
+ * array instead, and the fixups walk back up that path. Freed slots are chained through the
+ * left array and reused before the arrays grow.
+ *
+ * Subclasses own the key array, so all key comparisons stay on primitives.
+ */
+
+import java.util.Arrays;
+
+abstract class PrimitiveRedBlackTree {
+
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final int NOT_FOUND = -1;
+
+    static final int NIL = 0;
+    // a red black tree of n < 2^31 nodes is at most 2 log(n + 1) < 64 levels deep; the delete
+    // fixup can push one extra node onto the path
+    private static final int MAX_PATH = 66;
+
+    int[] left;
+    int[] right;
+    int[] counts; // for storing duplicates
+    boolean[] red;
+    int root;
+    int[] path; // path[0] is the root, path[depth] the node being inserted or deleted
+    private int size;
+    private int nextSlot;
+    private int freeHead;
+
+    PrimitiveRedBlackTree(int capacity) {
+        capacity = Math.max(2, capacity + 1); // + 1 for the sentinel
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.counts = new int[capacity];
+        this.red = new boolean[capacity];
+        this.path = new int[MAX_PATH];
+        this.root = NIL;
+        this.size = 0;
+        this.nextSlot = 1;
+        this.freeHead = NIL;
+    }
+
+    /**
+     * Resizes the key array along with the link arrays.
+     */
+    abstract void growKeys(int capacity);
+
+    /**
+     * Copies the key in slot from into slot to.
+     */
+    abstract void moveKey(int from, int to);
+
+    /**
+     * Returns the number of distinct keys in the tree.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns how many times the key at the node returned by find() was inserted.
+     */
+    public int getNodesAtLocation(int node) {
+        return this.counts[node];
+    }
+
+    public int getHeight() {
+        return getHeightHelper(this.root);
+    }
+
+    private int getHeightHelper(int node) {
+        if (node == NIL) return 0;
+        return Math.max(getHeightHelper(this.left[node]), getHeightHelper(this.right[node])) + 1;
+    }
+
+    /**
+     * Returns a free slot, reusing deleted ones first.
+     */
+    int allocate() {
+        int slot;
+        if (this.freeHead != NIL) {
+            slot = this.freeHead;
+            this.freeHead = this.left[slot];
+        } else {
+            if (this.nextSlot == this.left.length) grow();
+            slot = this.nextSlot++;
+        }
+        this.left[slot] = NIL;
+        this.right[slot] = NIL;
+        this.counts[slot] = 1;
+        this.red[slot] = true;
+        return slot;
+    }
+
+    private void free(int slot) {
+        this.left[slot] = this.freeHead;
+        this.right[slot] = NIL;
+        this.counts[slot] = 0;
+        this.red[slot] = false;
+        this.freeHead = slot;
+    }
+
+    private void grow() {
+        int oldCapacity = this.left.length;
+        if (oldCapacity == Integer.MAX_VALUE) throw new IllegalStateException("Tree is full");
+        int capacity = (int) Math.min(Integer.MAX_VALUE, oldCapacity + (oldCapacity >> 1) + 1L);
+        this.left = Arrays.copyOf(this.left, capacity);
+        this.right = Arrays.copyOf(this.right, capacity);
+        this.counts = Arrays.copyOf(this.counts, capacity);
+        this.red = Arrays.copyOf(this.red, capacity);
+        growKeys(capacity);
+    }
+
+    /**
+     * Links the freshly allocated red node as the left (or right) child of path[depth - 1],
+     * or as the root if depth is 0, and rebalances.
+     */
+    void insertNode(int node, int depth, boolean asLeft) {
+        if (depth == 0) {
+            this.root = node;
+        } else if (asLeft) {
+            this.left[this.path[depth - 1]] = node;
+        } else {
+            this.right[this.path[depth - 1]] = node;
+        }
+        this.path[depth] = node;
+        this.size++;
+        insertFixup(depth);
+    }
+
+    private void insertFixup(int depth) {
+        int node = this.path[depth];
+        while (depth >= 2 && this.red[this.path[depth - 1]]) {
+            int parent = this.path[depth - 1];
+            int grandparent = this.path[depth - 2]; // a red parent is never the root
+            int greatGrandparent = depth >= 3 ? this.path[depth - 3] : NIL;
+            if (parent == this.left[grandparent]) {
+                int ommer = this.right[grandparent];
+                if (this.red[ommer]) {
+                    this.red[parent] = false;
+                    this.red[ommer] = false;
+                    this.red[grandparent] = true;
+                    node = grandparent;
+                    depth -= 2;
+                    continue;
+                }
+                if (node == this.right[parent]) { // converts left->right case to left->left
+                    rotateLeft(parent, grandparent);
+                    parent = node;
+                }
+                this.red[parent] = false;
+                this.red[grandparent] = true;
+                rotateRight(grandparent, greatGrandparent);
+            } else {
+                int ommer = this.left[grandparent];
+                if (this.red[ommer]) {
+                    this.red[parent] = false;
+                    this.red[ommer] = false;
+                    this.red[grandparent] = true;
+                    node = grandparent;
+                    depth -= 2;
+                    continue;
+                }
+                if (node == this.left[parent]) { // converts right->left case to right->right
+                    rotateRight(parent, grandparent);
+                    parent = node;
+                }
+                this.red[parent] = false;
+                this.red[grandparent] = true;
+                rotateLeft(grandparent, greatGrandparent);
+            }
+            break;
+        }
+        this.red[this.root] = false;
+    }
+
+    /**
+     * Removes one occurrence of the key at path[depth]. The slot is freed once its last
+     * duplicate is gone.
+     */
+    void removeAt(int depth) {
+        int node = this.path[depth];
+        if (this.counts[node] > 1) {
+            this.counts[node]--;
+            return;
+        }
+        if (this.left[node] != NIL && this.right[node] != NIL) {
+            // move the in-order successor's key here and unlink the successor instead
+            int successor = this.right[node];
+            this.path[++depth] = successor;
+            while (this.left[successor] != NIL) {
+                successor = this.left[successor];
+                this.path[++depth] = successor;
+            }
+            moveKey(successor, node);
+            this.counts[node] = this.counts[successor];
+            node = successor;
+        }
+
+        int child = this.left[node] != NIL ? this.left[node] : this.right[node];
+        if (depth == 0) {
+            this.root = child;
+        } else if (this.left[this.path[depth - 1]] == node) {
+            this.left[this.path[depth - 1]] = child;
+        } else {
+            this.right[this.path[depth - 1]] = child;
+        }
+        this.path[depth] = child;
+        if (!this.red[node]) {
+            deleteFixup(depth);
+        }
+        free(node);
+        this.size--;
+    }
+
+    /**
+     * path[depth] carries an extra black (it may be the NIL sentinel). Push it up until it
+     * lands on a red node or the root, rotating where a sibling can absorb it.
+     */
+    private void deleteFixup(int depth) {
+        int node = this.path[depth];
+        while (depth > 0 && !this.red[node]) {
+            int parent = this.path[depth - 1];
+            int grandparent = depth >= 2 ? this.path[depth - 2] : NIL;
+            if (node == this.left[parent]) {
+                int sibling = this.right[parent];
+                if (this.red[sibling]) {
+                    this.red[sibling] = false;
+                    this.red[parent] = true;
+                    rotateLeft(parent, grandparent);
+                    // sibling is now between grandparent and parent on the path
+                    this.path[depth - 1] = sibling;
+                    this.path[depth] = parent;
+                    this.path[++depth] = node;
+                    grandparent = sibling;
+                    sibling = this.right[parent];
+                }
+                if (!this.red[this.left[sibling]] && !this.red[this.right[sibling]]) {
+                    this.red[sibling] = true;
+                    node = parent;
+                    depth--;
+                } else {
+                    if (!this.red[this.right[sibling]]) {
+                        this.red[this.left[sibling]] = false;
+                        this.red[sibling] = true;
+                        rotateRight(sibling, parent);
+                        sibling = this.right[parent];
+                    }
+                    this.red[sibling] = this.red[parent];
+                    this.red[parent] = false;
+                    this.red[this.right[sibling]] = false;
+                    rotateLeft(parent, grandparent);
+                    node = this.root;
+                    break;
+                }
+            } else {
+                int sibling = this.left[parent];
+                if (this.red[sibling]) {
+                    this.red[sibling] = false;
+                    this.red[parent] = true;
+                    rotateRight(parent, grandparent);
+                    this.path[depth - 1] = sibling;
+                    this.path[depth] = parent;
+                    this.path[++depth] = node;
+                    grandparent = sibling;
+                    sibling = this.left[parent];
+                }
+                if (!this.red[this.left[sibling]] && !this.red[this.right[sibling]]) {
+                    this.red[sibling] = true;
+                    node = parent;
+                    depth--;
+                } else {
+                    if (!this.red[this.left[sibling]]) {
+                        this.red[this.right[sibling]] = false;
+                        this.red[sibling] = true;
+                        rotateLeft(sibling, parent);
+                        sibling = this.left[parent];
+                    }
+                    this.red[sibling] = this.red[parent];
+                    this.red[parent] = false;
+                    this.red[this.left[sibling]] = false;
+                    rotateRight(parent, grandparent);
+                    node = this.root;
+                    break;
+                }
+            }
+        }
+        this.red[node] = false;
+        this.red[NIL] = false;
+    }
+
+    /**
+     * Textbook left rotation: node becomes the LEFT child of its RIGHT child. parent is the
+     * node's parent, or NIL if node is the root. Colors are left alone.
+     */
+    private void rotateLeft(int node, int parent) {
+        int pivot = this.right[node];
+        this.right[node] = this.left[pivot];
+        this.left[pivot] = node;
+        replaceChild(parent, node, pivot);
+    }
+
+    /**
+     * Textbook right rotation: node becomes the RIGHT child of its LEFT child.
+     */
+    private void rotateRight(int node, int parent) {
+        int pivot = this.left[node];
+        this.left[node] = this.right[pivot];
+        this.right[pivot] = node;
+        replaceChild(parent, node, pivot);
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (parent == NIL) {
+            this.root = newChild;
+        } else if (this.left[parent] == oldChild) {
+            this.left[parent] = newChild;
+        } else {
+            this.right[parent] = newChild;
+        }
+    }
+}
@@ -15,32 +15,199 @@
  * 
  * From a memory usage standpoint, the RedBlackTree class can handle very large inputs on the order of 2^26 nodes, although
  * past 2^20 nodes things start to become slow. The JVM runs out of memory on my system at 2^27 nodes.
+ * RedBlackTreeBenchmark measures throughput, allocation and p99 latency against TreeMap and TreeSet.
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class RedBlackTree<T extends Comparable<? super T>> {
+public class RedBlackTree<T extends Comparable<? super T>> implements Iterable<T> {
 
     public static final int DEFAULT_TREE_SIZE = 15;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 12; // smaller set operations stay on the calling thread
+    // run with -DRedBlackTree.statistics=false to have the JIT drop all statistics code
+    static final boolean STATISTICS_SUPPORTED = !"false".equals(System.getProperty("RedBlackTree.statistics"));
+    private static final int PUBLISH_INTERVAL = 1 << 10; // counted inserts, deletes or searches between published snapshots
 
     private TreeNode<T> root;
-    private int size;
+    private TreeNode<T> finger; // node of the most recent insertion, or null
+    private int blackHeight; // black nodes on every path from the root down, kept up to date in O(1)
+    private Counters counters; // null unless statistics are enabled
+    private volatile RedBlackTreeStatistics published; // the snapshot other threads may read, see publishStatistics
 
     /**
-     * Constructor for class RedBlackTree.
+     * Constructor for class RedBlackTree. The data does not need to be sorted; it is sorted
+     * once and bulk loaded rather than inserted key by key.
      */
     @SafeVarargs
     public RedBlackTree(T... data) {
         this.root = null;
-        this.size = 0;
-        for (T dataPoint : data) {
-            emplace(dataPoint);
+        if (data.length > 0) {
+            // copied key by key: handing the varargs array itself on is what javac flags as unsafe
+            Object[] keys = new Object[data.length];
+            for (int i = 0; i < data.length; i++) keys[i] = data[i];
+            this.link(RedBlackTree.<T>sortInPlace(keys).iterator());
         }
     }
 
+    /**
+     * Builds a tree from keys in ascending order in O(n), with no rotations and one
+     * compareTo per key. Equal neighbouring keys are stored as duplicates of one node.
+     */
+    public static <T extends Comparable<? super T>> RedBlackTree<T> buildFromSorted(T[] sorted) {
+        return buildFromSorted(Arrays.asList(sorted).iterator());
+    }
+
+    public static <T extends Comparable<? super T>> RedBlackTree<T> buildFromSorted(Iterable<? extends T> sorted) {
+        return buildFromSorted(sorted.iterator());
+    }
+
+    public static <T extends Comparable<? super T>> RedBlackTree<T> buildFromSorted(Iterator<? extends T> sorted) {
+        RedBlackTree<T> tree = new RedBlackTree<>();
+        tree.link(sorted);
+        return tree;
+    }
+
+    /**
+     * Sorts a copy of data and bulk loads it. Arrays.parallelSort sorts large inputs on the
+     * common ForkJoinPool and falls back to a sequential sort for small ones.
+     */
+    public static <T extends Comparable<? super T>> RedBlackTree<T> buildFromUnsorted(T[] data) {
+        return buildFromSorted(RedBlackTree.<T>sortedCopy(data).iterator());
+    }
+
+    public static <T extends Comparable<? super T>> RedBlackTree<T> buildFromUnsorted(Collection<? extends T> data) {
+        return buildFromSorted(RedBlackTree.<T>sortedCopy(data.toArray()).iterator());
+    }
+
+    private static <T> List<T> sortedCopy(Object[] data) {
+        return sortInPlace(Arrays.copyOf(data, data.length, Object[].class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> sortInPlace(Object[] keys) {
+        Arrays.parallelSort(keys, null); // null means natural ordering
+        return (List<T>) Arrays.asList(keys);
+    }
+
+    /**
+     * Replaces the contents of this tree with the sorted keys. The nodes are created in key
+     * order and then linked into a tree where every subtree splits its range at the middle,
+     * so all levels but the last are full. Coloring the last level red (unless it is the
+     * root) and everything else black then satisfies the red-black properties.
+     */
+    private void link(Iterator<? extends T> sorted) {
+        ArrayList<TreeNode<T>> nodes = new ArrayList<>();
+        TreeNode<T> previous = null;
+        while (sorted.hasNext()) {
+            T data = sorted.next();
+            int comparison = previous == null ? 1 : data.compareTo(previous.getData());
+            if (comparison < 0) {
+                throw new IllegalArgumentException("Keys are not sorted: " + data + " follows " + previous.getData());
+            } else if (comparison == 0) {
+                previous.addNodeHere();
+            } else {
+                previous = new TreeNode<T>(data, false);
+                nodes.add(previous);
+            }
+        }
+        int redDepth = 31 - Integer.numberOfLeadingZeros(Math.max(1, nodes.size())); // floor(log2(n))
+        this.root = linkRange(nodes, 0, nodes.size() - 1, 0, redDepth);
+        this.finger = null;
+        this.blackHeight = getBlackHeight(this.root);
+    }
+
+    private static <T extends Comparable<? super T>> TreeNode<T> linkRange(List<TreeNode<T>> nodes, int low,
+            int high, int depth, int redDepth) {
+        if (low > high) return null;
+        int middle = (low + high) >>> 1;
+        TreeNode<T> node = nodes.get(middle);
+        node.setColor(depth == redDepth && depth > 0);
+        TreeNode<T> left = linkRange(nodes, low, middle - 1, depth + 1, redDepth);
+        TreeNode<T> right = linkRange(nodes, middle + 1, high, depth + 1, redDepth);
+        node.setLeftChild(left);
+        node.setRightChild(right);
+        if (left != null) left.setParent(node);
+        if (right != null) right.setParent(node);
+        node.updateSubtreeSize();
+        return node;
+    }
+
+    /**
+     * Builds a tree in O(n) from count distinct nodes supplied in ascending key order. Each
+     * node is linked as soon as it arrives instead of being collected first, so the tree is
+     * the only copy of the keys in memory. The shape and colors are the same as link()'s.
+     */
+    static <T extends Comparable<? super T>> RedBlackTree<T> linkFromSorted(int count, Supplier<TreeNode<T>> nodes) {
+        RedBlackTree<T> tree = new RedBlackTree<>();
+        InOrderLinker<T> linker = new InOrderLinker<>(nodes, 31 - Integer.numberOfLeadingZeros(Math.max(1, count)));
+        tree.root = linker.link(count, 0);
+        tree.blackHeight = getBlackHeight(tree.root);
+        return tree;
+    }
+
+    private static final class InOrderLinker<T extends Comparable<? super T>> {
+        private final Supplier<TreeNode<T>> nodes;
+        private final int redDepth;
+        private TreeNode<T> previous;
+
+        InOrderLinker(Supplier<TreeNode<T>> nodes, int redDepth) {
+            this.nodes = nodes;
+            this.redDepth = redDepth;
+        }
+
+        /**
+         * Links the next count nodes, splitting them at the middle like linkRange does.
+         */
+        TreeNode<T> link(int count, int depth) {
+            if (count == 0) return null;
+            int leftCount = (count - 1) >>> 1;
+            TreeNode<T> left = link(leftCount, depth + 1);
+            TreeNode<T> node = this.nodes.get();
+            if (this.previous != null && node.getData().compareTo(this.previous.getData()) <= 0) {
+                throw new IllegalArgumentException("Keys are not sorted: " + node.getData() + " follows "
+                        + this.previous.getData());
+            }
+            this.previous = node;
+            TreeNode<T> right = link(count - 1 - leftCount, depth + 1);
+            node.setColor(depth == this.redDepth && depth > 0);
+            node.setLeftChild(left);
+            node.setRightChild(right);
+            if (left != null) left.setParent(node);
+            if (right != null) right.setParent(node);
+            node.updateSubtreeSize();
+            return node;
+        }
+    }
+
+    /**
+     * Wraps an existing subtree. Used by join and split, which move TreeNodes between trees.
+     * blackHeight is the black height of root once it is colored black, which the callers
+     * always know, so it is never recounted. The size comes with root.
+     */
+    private RedBlackTree(TreeNode<T> root, int blackHeight) {
+        this.root = root;
+        if (root != null) {
+            root.setParent(null);
+            root.setColor(false);
+        }
+        this.blackHeight = blackHeight;
+    }
+
     /**
      * Inserts and constructs a new TreeNode into the tree.
      */
@@ -48,87 +215,143 @@ public class RedBlackTree<T extends Comparable<? super T>> {
         insert(new TreeNode<T>(data, true));
     }
 
+    /**
+     * Finger insertion: inserts data by searching outward from hint, a node of this tree,
+     * instead of down from the root. Only the part of the tree between hint and data's
+     * position is compared against, so keys that land close to the hint cost O(1)
+     * comparisons. Returns the node holding data, which makes a good hint for the next key.
+     */
+    public TreeNode<T> emplace(T data, TreeNode<T> hint) {
+        TreeNode<T> start = hint == null || this.root == null ? this.root : findStart(hint, data);
+        return insertBelow(start, new TreeNode<T>(data, true));
+    }
+
+    /**
+     * Finger insertion starting from the node of the most recent insertion. For ascending
+     * or descending streams this makes every insert cost amortized O(1) comparisons.
+     */
+    public TreeNode<T> emplaceNearLast(T data) {
+        return emplace(data, this.finger);
+    }
+
     /**
      * Inserts a new TreeNode into the tree.
      */
     public void insert(TreeNode<T> newNode) {
+        insertBelow(this.root, newNode);
+    }
+
+    /**
+     * Inserts newNode by searching down from start, whose subtree must span the position of
+     * newNode's data. Returns the node now holding the data.
+     */
+    private TreeNode<T> insertBelow(TreeNode<T> start, TreeNode<T> newNode) {
         T data = newNode.getData();
-        TreeNode<T> current = this.root;
+        TreeNode<T> current = start;
         TreeNode<T> parent = null;
+        if (STATISTICS_SUPPORTED && this.counters != null && ++this.counters.inserts % PUBLISH_INTERVAL == 0) {
+            publishStatistics();
+        }
         if (this.root == null) {
             newNode.setColor(false);
             this.root = newNode;
-        } else {
-            while (current != null) {
-                parent = current;
-                if (data.compareTo(current.data) < 0) {
-                    current = current.getLeftChild();
-                } else if (data.compareTo(current.data) > 0) {
-                    current = current.getRightChild();
-                } else { // data.compareTo(current.data) == 0
-                    current.addNodeHere();
-                    break;
-                }
+            this.finger = newNode;
+            this.blackHeight = 1;
+            return newNode;
+        }
+        int comparison = 0;
+        while (current != null) {
+            parent = current;
+            comparison = compare(data, current.data);
+            if (comparison < 0) {
+                current = current.getLeftChild();
+            } else if (comparison > 0) {
+                current = current.getRightChild();
+            } else {
+                current.addNodeHere();
+                updateSubtreeSizes(current);
+                this.finger = current;
+                return current;
             }
+        }
 
-            
-            // now parent is the last node we traversed, and curr is a NIL node.
-            if (data.compareTo(parent.data) < 0) {
-                parent.setLeftChild(newNode);
-                newNode.setParent(parent);
-                size++;
-                rebalance(newNode);
-            } else if (data.compareTo(parent.data) > 0) {
-                parent.setRightChild(newNode);
-                newNode.setParent(parent);
-                size++;
-                rebalance(newNode);
-            } else {
-                parent.addNodeHere();
+        // now parent is the last node we traversed, and curr is a NIL node.
+        if (comparison < 0) {
+            parent.setLeftChild(newNode);
+        } else {
+            parent.setRightChild(newNode);
+        }
+        newNode.setParent(parent);
+        updateSubtreeSizes(parent); // every node on the path gains one occurrence
+        rebalance(newNode);
+        this.finger = newNode;
+        return newNode;
+    }
+
+    /**
+     * Returns the lowest node on the path from hint to the root whose subtree spans key.
+     * A subtree's keys are bounded by the nearest ancestors it hangs to the left and to the
+     * right of, and key is already on the correct side of one of those bounds. So only the
+     * ancestors bounding the other side need a comparison, and the climb stops at the first
+     * one that key does not pass.
+     */
+    private TreeNode<T> findStart(TreeNode<T> hint, T key) {
+        int comparison = compare(key, hint.getData());
+        if (comparison == 0) return hint;
+        boolean greater = comparison > 0;
+        TreeNode<T> start = hint;
+        TreeNode<T> child = hint;
+        TreeNode<T> parent = hint.getParent();
+        while (parent != null) {
+            boolean fromLeft = child == parent.getLeftChild();
+            if (fromLeft == greater) { // parent bounds the side key moves toward
+                comparison = compare(key, parent.getData());
+                if (comparison == 0) return parent;
+                if ((comparison > 0) != greater) return start;
+                start = parent;
             }
+            child = parent;
+            parent = parent.getParent();
         }
+        return start;
     }
 
+    /**
+     * Restores the red-black properties after a red node has been linked in. Note that
+     * rotate() swaps the colors of the pivot and its new parent, which is exactly the
+     * recoloring the rotation cases need.
+     */
     private void rebalance(TreeNode<T> newest) {
-        if (newest == null) return;
-        if (newest.equals(this.root)) return;
-        if (!newest.getParent().getColor()) return; // if parent is black, we're done
-        boolean ommerIsRed = newest.getOmmer() == null ? false : newest.getOmmer().getColor();
-        if (!ommerIsRed) {
-            if (newest.getGrandparent() != null) {
-                TreeNode<T> grandparentLeftChild = newest.getGrandparent().getLeftChild();
-                TreeNode<T> grandparentRightChild = newest.getGrandparent().getRightChild();
-                if (grandparentLeftChild != null) { // converts left->right case to
-                    // left->left
-                    if (newest.equals(grandparentLeftChild.getRightChild())) rotateLeft(newest.getParent());
-                } else if (grandparentRightChild != null) { // converts right->left->case
-                    // to right->right
-                    if (newest.equals(grandparentRightChild.getLeftChild())) rotateRight(newest.getParent());
-                }
-            } else {
-                if (newest.equals(newest.getParent().getRightChild())) {
-                    rotateLeft(newest.getParent());
-                } else if (newest.equals(newest.getParent().getLeftChild())) {
-                    rotateRight(newest.getParent());
+        while (newest != this.root && newest.getParent().isRed()) {
+            TreeNode<T> parent = newest.getParent();
+            TreeNode<T> grandparent = newest.getGrandparent(); // never null: a red parent is not the root
+            TreeNode<T> ommer = newest.getOmmer();
+            if (ommer != null && ommer.isRed()) {
+                // recolor to stay with red-black property and move the violation upward
+                parent.setColor(false);
+                ommer.setColor(false);
+                grandparent.setColor(true);
+                if (STATISTICS_SUPPORTED && this.counters != null) this.counters.recolorings += 3;
+                newest = grandparent;
+            } else if (parent == grandparent.getLeftChild()) {
+                if (newest == parent.getRightChild()) { // converts left->right case to left->left
+                    rotateRight(parent);
+                    newest = parent;
                 }
-            }
-
-            
-            if (newest.equals(newest.getParent().getLeftChild())) {
                 rotateLeft(newest.getGrandparent());
             } else {
+                if (newest == parent.getLeftChild()) { // converts right->left case to right->right
+                    rotateLeft(parent);
+                    newest = parent;
+                }
                 rotateRight(newest.getGrandparent());
             }
-        } else {
-             // recolor to stay with red-black property
-             newest.getParent().setColor(false);
-             if (newest.getOmmer() != null) newest.getOmmer().setColor(false);
-             // recurse upward to maintain red-black properties
-             rebalance(newest.getGrandparent());
         }
-
-        newest.getParent().setColor(false);
-        if (newest.getGrandparent() != null) newest.getGrandparent().setColor(true);
+        if (this.root.isRed()) { // the red violation reached the root; blackening it adds a level
+            this.root.setColor(false);
+            this.blackHeight++;
+            if (STATISTICS_SUPPORTED && this.counters != null) this.counters.recolorings++;
+        }
         // all balanced! whew!
     }
 
@@ -150,6 +373,7 @@ public class RedBlackTree<T extends Comparable<? super T>> {
 
     private void rotate(TreeNode<T> pivot, boolean left) {
         if (pivot == null) return;
+        if (STATISTICS_SUPPORTED && this.counters != null) this.counters.rotations++;
         TreeNode<T> newParent = null;
         TreeNode<T> parent = pivot.getParent();
         if (left) {
@@ -169,6 +393,10 @@ public class RedBlackTree<T extends Comparable<? super T>> {
         }
         pivot.setParent(newParent);
 
+        // pivot is now newParent's child, so it has to be brought up to date first
+        pivot.updateSubtreeSize();
+        newParent.updateSubtreeSize();
+
         //swap colors
         boolean temp = pivot.getColor();
         pivot.setColor(newParent.getColor());
@@ -198,77 +426,147 @@ public class RedBlackTree<T extends Comparable<? super T>> {
         this.delete(node.getData());
     }
 
+    /**
+     * Removes one occurrence of key. The node itself is unlinked once its last duplicate is gone.
+     */
     public void delete(T key) {
-        TreeNode<T> trash = this.find(key);
-        TreeNode<T> replaceWith = null;
-        
-        //Step One: BST-style delete
+        if (STATISTICS_SUPPORTED && this.counters != null && ++this.counters.deletes % PUBLISH_INTERVAL == 0) {
+            publishStatistics();
+        }
+        TreeNode<T> trash = this.findNode(key);
         if (trash == null) return; //no key to delete
-        if (trash.isLeaf()) { //0 children
-            this.replaceNode(trash, null);
-        } else if (trash.getRightChild() != null && trash.getLeftChild() != null) { //2 children
-            replaceWith = findInOrderSuccessor(trash);
+        if (trash.removeNodeHere()) { //a duplicate is left behind
+            updateSubtreeSizes(trash);
+            return;
+        }
+
+        //Step One: BST-style delete
+        TreeNode<T> replaceWith; // the node that moves into the unlinked node's position
+        TreeNode<T> replaceParent;
+        boolean removedWasRed = trash.getColor();
+        if (trash.getLeftChild() == null) { //0 or 1 children
+            replaceWith = trash.getRightChild();
+            replaceParent = trash.getParent();
             this.replaceNode(trash, replaceWith);
-        } else { //1 child
-            if (trash.getRightChild() == null) {
-                replaceWith = trash.getLeftChild();                
-            } else { //leftChild is null
-                replaceWith = trash.getRightChild();
-            }
+        } else if (trash.getRightChild() == null) { //1 child
+            replaceWith = trash.getLeftChild();
+            replaceParent = trash.getParent();
             this.replaceNode(trash, replaceWith);
+        } else { //2 children
+            TreeNode<T> successor = findInOrderSuccessor(trash);
+            removedWasRed = successor.getColor();
+            replaceWith = successor.getRightChild();
+            if (successor.getParent() == trash) {
+                replaceParent = successor;
+            } else {
+                replaceParent = successor.getParent();
+                this.replaceNode(successor, replaceWith);
+                successor.setRightChild(trash.getRightChild());
+                successor.getRightChild().setParent(successor);
+            }
+            this.replaceNode(trash, successor);
+            successor.setLeftChild(trash.getLeftChild());
+            successor.getLeftChild().setParent(successor);
+            successor.setColor(trash.getColor());
         }
+        trash.setParent(null);
+        trash.setLeftChild(null);
+        trash.setRightChild(null);
+        trash.updateSubtreeSize();
+        if (this.finger == trash) this.finger = null;
+        // every node whose subtree changed is on the path from replaceParent up to the root
+        updateSubtreeSizes(replaceParent);
 
         //Step Two: enforce RBT color property
-        boolean deletedWasRed = trash.getColor();
-        boolean replacedWithRed = replaceWith == null ? false : replaceWith.getColor();
-        if (deletedWasRed || replacedWithRed) {
-            replaceWith.setColor(false);
-        } else if (!deletedWasRed && !replacedWithRed) {
-            //things get quite complicated
-            boolean doubleBlack = true; //deleted was not red, and replacement was not red
-
-            if (this.root.equals(replaceWith)) {
-                replaceWith.setColor(false);
-                return;
-            }
-            //TODO: handle null nodes!
-            if (replaceWith.getSibling().isBlack()) {
-                if (replaceWith.getLeftNibling().isRed() || replaceWith.getRightNibling().isRed()) {
-                    
-                } else { //both are black
-                    
+        if (!removedWasRed) {
+            deleteRebalance(replaceWith, replaceParent);
+        }
+    }
+
+    /**
+     * Removing a black node leaves its replacement "double black". Push the extra black up
+     * the tree until it lands on a red node or the root, rotating where a sibling can absorb it.
+     */
+    private void deleteRebalance(TreeNode<T> doubleBlack, TreeNode<T> parent) {
+        boolean absorbed = false; // a rotation case took the extra black
+        while (doubleBlack != this.root && isBlack(doubleBlack)) {
+            if (doubleBlack == parent.getLeftChild()) {
+                TreeNode<T> sibling = parent.getRightChild();
+                if (sibling.isRed()) { //sibling is red
+                    rotateRight(parent);
+                    sibling = parent.getRightChild();
+                }
+                if (isBlack(sibling.getLeftChild()) && isBlack(sibling.getRightChild())) { //both are black
+                    sibling.setColor(true);
+                    if (STATISTICS_SUPPORTED && this.counters != null) this.counters.recolorings++;
+                    doubleBlack = parent;
+                    parent = doubleBlack.getParent();
+                } else {
+                    if (isBlack(sibling.getRightChild())) {
+                        rotateLeft(sibling);
+                        sibling = parent.getRightChild();
+                    }
+                    rotateRight(parent);
+                    sibling.getRightChild().setColor(false);
+                    doubleBlack = this.root;
+                    absorbed = true;
+                }
+            } else {
+                TreeNode<T> sibling = parent.getLeftChild();
+                if (sibling.isRed()) { //sibling is red
+                    rotateLeft(parent);
+                    sibling = parent.getLeftChild();
+                }
+                if (isBlack(sibling.getLeftChild()) && isBlack(sibling.getRightChild())) { //both are black
+                    sibling.setColor(true);
+                    if (STATISTICS_SUPPORTED && this.counters != null) this.counters.recolorings++;
+                    doubleBlack = parent;
+                    parent = doubleBlack.getParent();
+                } else {
+                    if (isBlack(sibling.getLeftChild())) {
+                        rotateRight(sibling);
+                        sibling = parent.getLeftChild();
+                    }
+                    rotateLeft(parent);
+                    sibling.getLeftChild().setColor(false);
+                    doubleBlack = this.root;
+                    absorbed = true;
                 }
-            } else { //sibling is red
-                
             }
         }
+        // an extra black that climbed all the way to the root is dropped, so every path lost one
+        if (!absorbed && isBlack(doubleBlack)) this.blackHeight--;
+        if (doubleBlack != null) doubleBlack.setColor(false);
     }
 
-    private void replaceNode(TreeNode<T> node, TreeNode<T> replaceWith) {
-        TreeNode<T> oldParent = null;
-        if (replaceWith != null) {
-            oldParent = replaceWith.getParent();
-            replaceWith.setParent(node.getParent());
+    /**
+     * Recomputes the subtree sizes from node up to the root.
+     */
+    private static void updateSubtreeSizes(TreeNode<?> node) {
+        for (; node != null; node = node.getParent()) {
+            node.updateSubtreeSize();
         }
-        if (node.equals(this.root)) {
-            replaceWith.setLeftChild(node.getLeftChild());
-            replaceWith.setRightChild(node.getRightChild());
+    }
+
+    private static boolean isBlack(TreeNode<?> node) {
+        return node == null || node.isBlack();
+    }
+
+    /**
+     * Puts replaceWith (which may be null) where node used to hang off its parent.
+     */
+    private void replaceNode(TreeNode<T> node, TreeNode<T> replaceWith) {
+        TreeNode<T> parent = node.getParent();
+        if (parent == null) {
             this.root = replaceWith;
+        } else if (node == parent.getLeftChild()) {
+            parent.setLeftChild(replaceWith);
         } else {
-            if (node.equals(node.getParent().getLeftChild())) {
-                node.getParent().setLeftChild(replaceWith);
-            } else {
-                node.getParent().setRightChild(replaceWith);
-            }
-            
+            parent.setRightChild(replaceWith);
         }
         if (replaceWith != null) {
-            if (replaceWith.equals(oldParent.getLeftChild())) oldParent.setLeftChild(null);
-            if (replaceWith.equals(oldParent.getRightChild())) oldParent.setRightChild(null);
-            replaceWith.getLeftChild().setParent(replaceWith);
-            replaceWith.getRightChild().setParent(replaceWith);
+            replaceWith.setParent(parent);
         }
-        
     }
 
     private TreeNode<T> findInOrderSuccessor(TreeNode<T> curr) {
@@ -280,12 +578,19 @@ public class RedBlackTree<T extends Comparable<? super T>> {
     }
 
     public TreeNode<T> find(T key) {
+        if (STATISTICS_SUPPORTED && this.counters != null && ++this.counters.searches % PUBLISH_INTERVAL == 0) {
+            publishStatistics();
+        }
+        return findNode(key);
+    }
+
+    private TreeNode<T> findNode(T key) {
         TreeNode<T> currNode = this.root;
-        T currData = currNode.getData();
         while (currNode != null) {
-            if (currData.compareTo(key) < 0) {
+            int comparison = compare(key, currNode.getData());
+            if (comparison < 0) {
                 currNode = currNode.getLeftChild();
-            } else if (currData.compareTo(key) > 0) {
+            } else if (comparison > 0) {
                 currNode = currNode.getRightChild();
             } else {
                 return currNode;
@@ -303,6 +608,354 @@ public class RedBlackTree<T extends Comparable<? super T>> {
         return this.contains(data);
     }
 
+    /**
+     * Returns how many keys in the tree are less than key, counting duplicates. Runs in
+     * O(log n) using the subtree sizes.
+     */
+    public int rank(T key) {
+        int rank = 0;
+        TreeNode<T> currNode = this.root;
+        while (currNode != null) {
+            int comparison = key.compareTo(currNode.getData());
+            if (comparison <= 0) {
+                if (comparison == 0) return rank + getSubtreeSize(currNode.getLeftChild());
+                currNode = currNode.getLeftChild();
+            } else {
+                rank += getSubtreeSize(currNode.getLeftChild()) + currNode.getNodesAtLocation();
+                currNode = currNode.getRightChild();
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the key at position index (0-based) of the sorted keys, duplicates included,
+     * in O(log n).
+     */
+    public T select(int index) {
+        if (index < 0 || index >= getSubtreeSize(this.root)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + getSubtreeSize(this.root)
+                    + " keys");
+        }
+        return selectNode(index).getData();
+    }
+
+    private TreeNode<T> selectNode(int index) {
+        TreeNode<T> currNode = this.root;
+        while (true) {
+            int leftSize = getSubtreeSize(currNode.getLeftChild());
+            if (index < leftSize) {
+                currNode = currNode.getLeftChild();
+            } else if (index < leftSize + currNode.getNodesAtLocation()) {
+                return currNode;
+            } else {
+                index -= leftSize + currNode.getNodesAtLocation();
+                currNode = currNode.getRightChild();
+            }
+        }
+    }
+
+    /**
+     * Returns how many keys lie in [from, to], counting duplicates, in O(log n).
+     */
+    public int countRange(T from, T to) {
+        if (from.compareTo(to) > 0) return 0;
+        TreeNode<T> last = this.find(to);
+        int upToLast = this.rank(to) + (last == null ? 0 : last.getNodesAtLocation());
+        return upToLast - this.rank(from);
+    }
+
+    private static int getSubtreeSize(TreeNode<?> node) {
+        return node == null ? 0 : node.getSubtreeSize();
+    }
+
+    /* ITERATION */
+
+    /**
+     * Iterates the keys in ascending order, once per duplicate.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return this.allKeys().iterator();
+    }
+
+    public Iterator<T> descendingIterator() {
+        return this.allKeys().descendingIterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return this.allKeys().spliterator();
+    }
+
+    public Stream<T> stream() {
+        return this.allKeys().stream();
+    }
+
+    /**
+     * Returns a view of the keys from from up to to. Like NavigableSet.subSet, the view is
+     * lazy: nothing is copied and it reflects later changes to the tree.
+     */
+    public RangeView subSet(T from, boolean fromInclusive, T to, boolean toInclusive) {
+        return new RangeView(from, fromInclusive, to, toInclusive);
+    }
+
+    public RangeView subSet(T from, T to) {
+        return subSet(from, true, to, false);
+    }
+
+    public RangeView headSet(T to, boolean inclusive) {
+        return new RangeView(null, false, to, inclusive);
+    }
+
+    public RangeView headSet(T to) {
+        return headSet(to, false);
+    }
+
+    public RangeView tailSet(T from, boolean inclusive) {
+        return new RangeView(from, inclusive, null, false);
+    }
+
+    public RangeView tailSet(T from) {
+        return tailSet(from, true);
+    }
+
+    private RangeView allKeys() {
+        return new RangeView(null, false, null, false);
+    }
+
+    /**
+     * Returns the in-order successor of node by following parent pointers, or null.
+     */
+    private static <T extends Comparable<? super T>> TreeNode<T> successor(TreeNode<T> node) {
+        if (node.getRightChild() != null) return getMinimum(node.getRightChild());
+        TreeNode<T> parent = node.getParent();
+        while (parent != null && node == parent.getRightChild()) {
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    private static <T extends Comparable<? super T>> TreeNode<T> predecessor(TreeNode<T> node) {
+        if (node.getLeftChild() != null) return getMaximum(node.getLeftChild());
+        TreeNode<T> parent = node.getParent();
+        while (parent != null && node == parent.getLeftChild()) {
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * A range of the tree's keys. A null bound means the range is unbounded on that side.
+     * Iterators walk parent pointers, so they need O(1) extra memory. The tree must not be
+     * modified while an iterator or spliterator is in use.
+     */
+    public final class RangeView implements Iterable<T> {
+        private final T from;
+        private final boolean fromInclusive;
+        private final T to;
+        private final boolean toInclusive;
+
+        private RangeView(T from, boolean fromInclusive, T to, boolean toInclusive) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        private boolean tooLow(T key) {
+            if (this.from == null) return false;
+            int comparison = key.compareTo(this.from);
+            return comparison < 0 || (comparison == 0 && !this.fromInclusive);
+        }
+
+        private boolean tooHigh(T key) {
+            if (this.to == null) return false;
+            int comparison = key.compareTo(this.to);
+            return comparison > 0 || (comparison == 0 && !this.toInclusive);
+        }
+
+        /**
+         * Returns the smallest node in range, or null if the range is empty.
+         */
+        private TreeNode<T> firstNode() {
+            TreeNode<T> first = null;
+            TreeNode<T> currNode = RedBlackTree.this.root;
+            while (currNode != null) {
+                if (tooLow(currNode.getData())) {
+                    currNode = currNode.getRightChild();
+                } else {
+                    first = currNode;
+                    currNode = currNode.getLeftChild();
+                }
+            }
+            return first == null || tooHigh(first.getData()) ? null : first;
+        }
+
+        private TreeNode<T> lastNode() {
+            TreeNode<T> last = null;
+            TreeNode<T> currNode = RedBlackTree.this.root;
+            while (currNode != null) {
+                if (tooHigh(currNode.getData())) {
+                    currNode = currNode.getLeftChild();
+                } else {
+                    last = currNode;
+                    currNode = currNode.getRightChild();
+                }
+            }
+            return last == null || tooLow(last.getData()) ? null : last;
+        }
+
+        public boolean contains(T key) {
+            return !tooLow(key) && !tooHigh(key) && RedBlackTree.this.contains(key);
+        }
+
+        /**
+         * Returns the number of keys in range, counting duplicates, in O(log n).
+         */
+        public int size() {
+            TreeNode<T> first = firstNode();
+            if (first == null) return 0;
+            TreeNode<T> last = lastNode();
+            return rank(last.getData()) + last.getNodesAtLocation() - rank(first.getData());
+        }
+
+        public boolean isEmpty() {
+            return firstNode() == null;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new KeyIterator(firstNode(), true);
+        }
+
+        public Iterator<T> descendingIterator() {
+            return new KeyIterator(lastNode(), false);
+        }
+
+        /**
+         * Returns a spliterator that splits at the median key, found from the subtree sizes
+         * in O(log n), so parallel streams get evenly sized halves.
+         */
+        @Override
+        public Spliterator<T> spliterator() {
+            TreeNode<T> first = firstNode();
+            if (first == null) return new KeySpliterator(null, null, 0);
+            TreeNode<T> last = lastNode();
+            int size = rank(last.getData()) + last.getNodesAtLocation() - rank(first.getData());
+            return new KeySpliterator(first, successor(last), size);
+        }
+
+        public Stream<T> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public Stream<T> parallelStream() {
+            return StreamSupport.stream(spliterator(), true);
+        }
+
+        private final class KeyIterator implements Iterator<T> {
+            private TreeNode<T> next;
+            private int duplicatesLeft;
+            private final boolean ascending;
+
+            KeyIterator(TreeNode<T> first, boolean ascending) {
+                this.next = first;
+                this.duplicatesLeft = first == null ? 0 : first.getNodesAtLocation();
+                this.ascending = ascending;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public T next() {
+                if (this.next == null) throw new NoSuchElementException();
+                T data = this.next.getData();
+                if (--this.duplicatesLeft == 0) {
+                    TreeNode<T> following = this.ascending ? successor(this.next) : predecessor(this.next);
+                    boolean outOfRange = following != null
+                            && (this.ascending ? tooHigh(following.getData()) : tooLow(following.getData()));
+                    this.next = outOfRange ? null : following;
+                    this.duplicatesLeft = this.next == null ? 0 : this.next.getNodesAtLocation();
+                }
+                return data;
+            }
+        }
+    }
+
+    /**
+     * Covers the nodes from current up to, but not including, fence (null for the end of the
+     * tree). size counts duplicates.
+     */
+    private final class KeySpliterator implements Spliterator<T> {
+        private TreeNode<T> current;
+        private final TreeNode<T> fence;
+        private int size;
+        private int duplicatesLeft;
+
+        KeySpliterator(TreeNode<T> current, TreeNode<T> fence, int size) {
+            this.current = current;
+            this.fence = fence;
+            this.size = size;
+            this.duplicatesLeft = current == null ? 0 : current.getNodesAtLocation();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (this.current == null || this.current == this.fence) return false;
+            action.accept(this.current.getData());
+            this.size--;
+            if (--this.duplicatesLeft == 0) {
+                this.current = successor(this.current);
+                this.duplicatesLeft = this.current == null ? 0 : this.current.getNodesAtLocation();
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (tryAdvance(action)) { }
+        }
+
+        /**
+         * Hands off the first half of the range, cut at the node holding the median key.
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            if (this.size < 2 || this.duplicatesLeft != this.current.getNodesAtLocation()) return null;
+            int start = rank(this.current.getData());
+            TreeNode<T> middle = selectNode(start + this.size / 2);
+            if (middle == this.current) middle = successor(middle);
+            if (middle == null || middle == this.fence) return null;
+            int prefixSize = rank(middle.getData()) - start;
+            KeySpliterator prefix = new KeySpliterator(this.current, middle, prefixSize);
+            this.current = middle;
+            this.duplicatesLeft = middle.getNodesAtLocation();
+            this.size -= prefixSize;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null; // natural ordering
+        }
+    }
+
     public static RedBlackTree<Integer> generateIntegerTree() {
         return generateIntegerTree(DEFAULT_TREE_SIZE);
     }
@@ -319,33 +972,406 @@ public class RedBlackTree<T extends Comparable<? super T>> {
         return this.root;
     }
 
+    /**
+     * Returns the number of distinct keys in the tree in O(1). Every node counts the distinct
+     * keys below it, so the root's count stays right through splits and joins too.
+     */
     public int getSize() {
-        return this.size;
+        return this.root == null ? 0 : this.root.getSubtreeNodes();
     }
 
+    /**
+     * Joins lhs, partition and rhs into one tree in O(log n). Every key in lhs must be less
+     * than partition and every key in rhs greater than it. The nodes of lhs and rhs are moved,
+     * not copied, into the returned tree, so both arguments are left empty.
+     */
     public static <T extends Comparable<? super T>> RedBlackTree<T> joinTrees(RedBlackTree<T> lhs, T partition,
             RedBlackTree<T> rhs) {
-        throw new RuntimeException("Not yet implemented!");
+        if (lhs.root != null && getMaximum(lhs.root).getData().compareTo(partition) >= 0) {
+            throw new IllegalArgumentException("Left tree has keys not less than " + partition);
+        }
+        if (rhs.root != null && getMinimum(rhs.root).getData().compareTo(partition) <= 0) {
+            throw new IllegalArgumentException("Right tree has keys not greater than " + partition);
+        }
+        RedBlackTree<T> joined = join(lhs.root, lhs.blackHeight, new TreeNode<T>(partition, true), rhs.root,
+                rhs.blackHeight);
+        lhs.clear();
+        rhs.clear();
+        return joined;
     }
 
+    /**
+     * Splits tree in O(log n). Afterwards tree holds the keys less than partition, and the
+     * returned tree holds the keys greater than or equal to it. No nodes are copied.
+     */
     public static <T extends Comparable<? super T>> RedBlackTree<T> splitTree(RedBlackTree<T> tree, T partition) {
-        throw new RuntimeException("Not yet implemented!");
+        TreeNode<T> root = tree.root;
+        int height = tree.blackHeight;
+        tree.clear();
+        Split<T> split = split(root, height, partition);
+        RedBlackTree<T> upper = split.match == null
+                ? new RedBlackTree<>(split.right, split.rightHeight)
+                : join(null, 0, split.match, split.right, split.rightHeight);
+        tree.root = split.left;
+        tree.finger = null;
+        if (tree.root != null) tree.root.setColor(false);
+        tree.blackHeight = split.leftHeight;
+        return upper;
+    }
+
+    private void clear() {
+        this.root = null;
+        this.finger = null;
+        this.blackHeight = 0;
+    }
+
+    /**
+     * The three pieces of a split: keys less than the partition, the node holding the
+     * partition (or null if it is absent) and keys greater than the partition. The heights
+     * are the black heights of the outer pieces once their roots are colored black.
+     */
+    private static class Split<T extends Comparable<? super T>> {
+        private final TreeNode<T> left;
+        private final int leftHeight;
+        private final TreeNode<T> match;
+        private final TreeNode<T> right;
+        private final int rightHeight;
+
+        Split(TreeNode<T> left, int leftHeight, TreeNode<T> match, TreeNode<T> right, int rightHeight) {
+            this.left = left;
+            this.leftHeight = leftHeight;
+            this.match = match;
+            this.right = right;
+            this.rightHeight = rightHeight;
+        }
+    }
+
+    /**
+     * Black height of child once it is colored black, given the same for its parent. A
+     * black parent counts itself and a red one does not, but a parent colored black always
+     * does, so its children sit one level lower and a red child gains its own level back.
+     */
+    private static int childHeight(TreeNode<?> child, int parentHeight) {
+        return parentHeight - (isBlack(child) ? 1 : 0);
+    }
+
+    /**
+     * Splits the subtree rooted at node, of black height height (counting node as black),
+     * around partition. Walks one root-to-leaf path and joins the hanging subtrees back
+     * together on the way up. Every join gets the black heights of its inputs passed in, so
+     * joining trees whose heights differ by d costs O(d + 1). On the way up the pieces on
+     * each side only grow, so their height differences telescope to O(log n) overall.
+     */
+    private static <T extends Comparable<? super T>> Split<T> split(TreeNode<T> node, int height, T partition) {
+        if (node == null) return new Split<>(null, 0, null, null, 0);
+        TreeNode<T> left = node.getLeftChild();
+        TreeNode<T> right = node.getRightChild();
+        int leftHeight = childHeight(left, height);
+        int rightHeight = childHeight(right, height);
+        detach(node);
+        int comparison = partition.compareTo(node.getData());
+        if (comparison == 0) {
+            return new Split<>(left, leftHeight, node, right, rightHeight);
+        } else if (comparison < 0) {
+            Split<T> lower = split(left, leftHeight, partition);
+            RedBlackTree<T> joined = join(lower.right, lower.rightHeight, node, right, rightHeight);
+            return new Split<>(lower.left, lower.leftHeight, lower.match, joined.root, joined.blackHeight);
+        } else {
+            Split<T> upper = split(right, rightHeight, partition);
+            RedBlackTree<T> joined = join(left, leftHeight, node, upper.left, upper.leftHeight);
+            return new Split<>(joined.root, joined.blackHeight, upper.match, upper.right, upper.rightHeight);
+        }
+    }
+
+    /**
+     * Cuts node loose from its parent and children so it can be reused as a join key.
+     */
+    private static <T extends Comparable<? super T>> void detach(TreeNode<T> node) {
+        if (node.getLeftChild() != null) node.getLeftChild().setParent(null);
+        if (node.getRightChild() != null) node.getRightChild().setParent(null);
+        node.setLeftChild(null);
+        node.setRightChild(null);
+        node.setParent(null);
+        node.updateSubtreeSize();
+    }
+
+    /**
+     * Joins the subtrees left and right (either may be null), of black heights leftHeight and
+     * rightHeight once their roots are colored black, with middle between them. Returns the
+     * joined tree, whose blackHeight is kept up to date by the rebalancing. middle is linked in
+     * red along the spine of the taller tree at the first black node whose black height
+     * matches the shorter tree, then rebalanced like an ordinary insertion. Runs in
+     * O(|leftHeight - rightHeight| + 1).
+     */
+    private static <T extends Comparable<? super T>> RedBlackTree<T> join(TreeNode<T> left, int leftHeight,
+            TreeNode<T> middle, TreeNode<T> right, int rightHeight) {
+        middle.setColor(true);
+        RedBlackTree<T> lhs = new RedBlackTree<>(left, leftHeight);
+        RedBlackTree<T> rhs = new RedBlackTree<>(right, rightHeight);
+        if (leftHeight >= rightHeight) {
+            lhs.joinAlongSpine(middle, rhs.root, rightHeight, true);
+            return lhs;
+        } else {
+            rhs.joinAlongSpine(middle, lhs.root, leftHeight, false);
+            return rhs;
+        }
+    }
+
+    /**
+     * Hangs middle off the right (or left) spine of this tree, with other, a tree of black
+     * height otherHeight, as its right (or left) child. The walk starts from this tree's
+     * known black height, so it only descends the levels it has to.
+     */
+    private void joinAlongSpine(TreeNode<T> middle, TreeNode<T> other, int otherHeight, boolean alongRight) {
+        TreeNode<T> parent = null;
+        TreeNode<T> current = this.root;
+        int height = this.blackHeight;
+        while (height > otherHeight || (current != null && current.isRed())) {
+            if (current.isBlack()) height--;
+            parent = current;
+            current = alongRight ? current.getRightChild() : current.getLeftChild();
+        }
+
+        if (alongRight) {
+            middle.setLeftChild(current);
+            middle.setRightChild(other);
+        } else {
+            middle.setLeftChild(other);
+            middle.setRightChild(current);
+        }
+        if (current != null) current.setParent(middle);
+        if (other != null) other.setParent(middle);
+        middle.setParent(parent);
+        if (parent == null) {
+            this.root = middle;
+        } else if (alongRight) {
+            parent.setRightChild(middle);
+        } else {
+            parent.setLeftChild(middle);
+        }
+        // the spine above middle is as long as the walk down, so this keeps the join cheap
+        updateSubtreeSizes(middle);
+        rebalance(middle);
+    }
+
+    /**
+     * Counts the black nodes on any path from node down to a leaf, including node itself.
+     */
+    private static int getBlackHeight(TreeNode<?> node) {
+        int height = 0;
+        while (node != null) {
+            if (node.isBlack()) height++;
+            node = node.getLeftChild();
+        }
+        return height;
+    }
+
+    private static <T extends Comparable<? super T>> TreeNode<T> getMinimum(TreeNode<T> node) {
+        while (node.getLeftChild() != null) node = node.getLeftChild();
+        return node;
     }
 
+    private static <T extends Comparable<? super T>> TreeNode<T> getMaximum(TreeNode<T> node) {
+        while (node.getRightChild() != null) node = node.getRightChild();
+        return node;
+    }
+
+    /**
+     * Multiset union: duplicate counts are added. Like joinTrees, the nodes of both arguments
+     * are reused by the returned tree and both arguments are left empty. Runs in
+     * O(m log(n/m + 1)) work for trees of sizes m <= n.
+     */
     public static <T extends Comparable<? super T>> RedBlackTree<T> union(RedBlackTree<T> lhs, RedBlackTree<T> rhs) {
-        throw new RuntimeException("Not yet implemented!");
+        return union(lhs, rhs, DEFAULT_PARALLEL_THRESHOLD);
     }
 
+    /**
+     * Same as union(lhs, rhs), but subproblems of at least parallelThreshold keys are forked
+     * onto the common ForkJoinPool.
+     */
+    public static <T extends Comparable<? super T>> RedBlackTree<T> union(RedBlackTree<T> lhs, RedBlackTree<T> rhs,
+            int parallelThreshold) {
+        return combine(SetOperation.UNION, lhs, rhs, parallelThreshold);
+    }
+
+    /**
+     * Multiset intersection: a key is kept with the smaller of its two duplicate counts.
+     */
     public static <T extends Comparable<? super T>> RedBlackTree<T> intersect(RedBlackTree<T> lhs, RedBlackTree<T> rhs) {
-        throw new RuntimeException("Not yet implemented!");
+        return intersect(lhs, rhs, DEFAULT_PARALLEL_THRESHOLD);
     }
 
+    public static <T extends Comparable<? super T>> RedBlackTree<T> intersect(RedBlackTree<T> lhs, RedBlackTree<T> rhs,
+            int parallelThreshold) {
+        return combine(SetOperation.INTERSECTION, lhs, rhs, parallelThreshold);
+    }
+
+    /**
+     * Multiset difference lhs - rhs: duplicate counts are subtracted and keys whose count
+     * drops to zero are removed.
+     */
     public static <T extends Comparable<? super T>> RedBlackTree<T> difference(RedBlackTree<T> lhs, RedBlackTree<T> rhs) {
-        throw new RuntimeException("Not yet implemented!");
+        return difference(lhs, rhs, DEFAULT_PARALLEL_THRESHOLD);
     }
 
+    public static <T extends Comparable<? super T>> RedBlackTree<T> difference(RedBlackTree<T> lhs, RedBlackTree<T> rhs,
+            int parallelThreshold) {
+        return combine(SetOperation.DIFFERENCE, lhs, rhs, parallelThreshold);
+    }
+
+    /**
+     * Multiset symmetric difference: a key is kept with the absolute difference of its two
+     * duplicate counts.
+     */
     public static <T extends Comparable<? super T>> RedBlackTree<T> symmetricDifference(RedBlackTree<T> lhs, RedBlackTree<T> rhs) {
-        throw new RuntimeException("Not yet implemented!");
+        return symmetricDifference(lhs, rhs, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public static <T extends Comparable<? super T>> RedBlackTree<T> symmetricDifference(RedBlackTree<T> lhs,
+            RedBlackTree<T> rhs, int parallelThreshold) {
+        return combine(SetOperation.SYMMETRIC_DIFFERENCE, lhs, rhs, parallelThreshold);
+    }
+
+    private enum SetOperation {
+        UNION, INTERSECTION, DIFFERENCE, SYMMETRIC_DIFFERENCE;
+
+        /**
+         * Duplicate count of a key that occurs lhsCount times on the left and rhsCount times
+         * on the right. Zero means the key is dropped.
+         */
+        int combineCounts(int lhsCount, int rhsCount) {
+            switch (this) {
+                case UNION:
+                    return lhsCount + rhsCount;
+                case INTERSECTION:
+                    return Math.min(lhsCount, rhsCount);
+                case DIFFERENCE:
+                    return Math.max(0, lhsCount - rhsCount);
+                default:
+                    return Math.abs(lhsCount - rhsCount);
+            }
+        }
+    }
+
+    private static <T extends Comparable<? super T>> RedBlackTree<T> combine(SetOperation operation,
+            RedBlackTree<T> lhs, RedBlackTree<T> rhs, int parallelThreshold) {
+        SetOperationTask<T> task = new SetOperationTask<>(operation, lhs.root, lhs.blackHeight, rhs.root,
+                rhs.blackHeight, parallelThreshold);
+        boolean parallel = task.isParallel(lhs.blackHeight);
+        lhs.clear();
+        rhs.clear();
+        return parallel ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+    }
+
+    /**
+     * Divide-and-conquer set operation from "Just Join for Parallel Ordered Sets" (Blelloch,
+     * Ferizovic and Sun): split rhs around the root of lhs, combine the two halves
+     * independently and join the results around the root. The two halves share no nodes, so
+     * the left one can be forked while this thread works on the right one. Every subtree is
+     * passed along with its black height, so the splits, joins and fork decisions never have
+     * to walk a spine to measure one.
+     */
+    private static class SetOperationTask<T extends Comparable<? super T>> extends RecursiveTask<RedBlackTree<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final SetOperation operation;
+        private final TreeNode<T> lhs;
+        private final int lhsHeight;
+        private final TreeNode<T> rhs;
+        private final int rhsHeight;
+        private final int parallelThreshold;
+
+        SetOperationTask(SetOperation operation, TreeNode<T> lhs, int lhsHeight, TreeNode<T> rhs, int rhsHeight,
+                int parallelThreshold) {
+            this.operation = operation;
+            this.lhs = lhs;
+            this.lhsHeight = lhsHeight;
+            this.rhs = rhs;
+            this.rhsHeight = rhsHeight;
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        @Override
+        protected RedBlackTree<T> compute() {
+            return combine(this.lhs, this.lhsHeight, this.rhs, this.rhsHeight, isParallel(this.lhsHeight));
+        }
+
+        /**
+         * A subtree of black height h holds at least 2^h - 1 keys, which is a cheap lower
+         * bound on the size of the subproblem.
+         */
+        private boolean isParallel(int blackHeight) {
+            return blackHeight >= 31 || (1 << blackHeight) - 1 >= this.parallelThreshold;
+        }
+
+        private RedBlackTree<T> combine(TreeNode<T> lhs, int lhsHeight, TreeNode<T> rhs, int rhsHeight,
+                boolean parallel) {
+            if (lhs == null) {
+                return this.operation == SetOperation.UNION || this.operation == SetOperation.SYMMETRIC_DIFFERENCE
+                        ? new RedBlackTree<>(rhs, rhsHeight) : new RedBlackTree<>();
+            }
+            if (rhs == null) {
+                return this.operation == SetOperation.INTERSECTION
+                        ? new RedBlackTree<>() : new RedBlackTree<>(lhs, lhsHeight);
+            }
+            TreeNode<T> pivot = lhs;
+            TreeNode<T> lhsLeft = pivot.getLeftChild();
+            TreeNode<T> lhsRight = pivot.getRightChild();
+            int lhsLeftHeight = childHeight(lhsLeft, lhsHeight);
+            int lhsRightHeight = childHeight(lhsRight, lhsHeight);
+            detach(pivot);
+            Split<T> split = split(rhs, rhsHeight, pivot.getData());
+
+            RedBlackTree<T> left;
+            RedBlackTree<T> right;
+            if (parallel && isParallel(lhsLeftHeight)) {
+                SetOperationTask<T> leftTask = new SetOperationTask<>(this.operation, lhsLeft, lhsLeftHeight,
+                        split.left, split.leftHeight, this.parallelThreshold);
+                leftTask.fork();
+                right = combine(lhsRight, lhsRightHeight, split.right, split.rightHeight, true);
+                left = leftTask.join();
+            } else {
+                left = combine(lhsLeft, lhsLeftHeight, split.left, split.leftHeight, false);
+                right = combine(lhsRight, lhsRightHeight, split.right, split.rightHeight, false);
+            }
+
+            int matchCount = split.match == null ? 0 : split.match.getNodesAtLocation();
+            int count = this.operation.combineCounts(pivot.getNodesAtLocation(), matchCount);
+            if (count == 0) {
+                return joinWithoutMiddle(left, right);
+            }
+            pivot.setNodesAtLocation(count);
+            return RedBlackTree.join(left.root, left.blackHeight, pivot, right.root, right.blackHeight);
+        }
+    }
+
+    /**
+     * Joins two trees whose keys are all ordered left before right, using the maximum of
+     * left as the middle node.
+     */
+    private static <T extends Comparable<? super T>> RedBlackTree<T> joinWithoutMiddle(RedBlackTree<T> left,
+            RedBlackTree<T> right) {
+        if (left.root == null) return right;
+        Split<T> last = splitLast(left.root, left.blackHeight);
+        return join(last.left, last.leftHeight, last.match, right.root, right.blackHeight);
+    }
+
+    /**
+     * Splits off the maximum node of the subtree rooted at node, of black height height. The
+     * result has no right part.
+     */
+    private static <T extends Comparable<? super T>> Split<T> splitLast(TreeNode<T> node, int height) {
+        TreeNode<T> left = node.getLeftChild();
+        TreeNode<T> right = node.getRightChild();
+        int leftHeight = childHeight(left, height);
+        int rightHeight = childHeight(right, height);
+        detach(node);
+        if (right == null) {
+            return new Split<>(left, leftHeight, node, null, 0);
+        }
+        Split<T> last = splitLast(right, rightHeight);
+        RedBlackTree<T> joined = join(left, leftHeight, node, last.left, last.leftHeight);
+        return new Split<>(joined.root, joined.blackHeight, last.match, null, 0);
     }
 
     /*
@@ -393,25 +1419,109 @@ public class RedBlackTree<T extends Comparable<? super T>> {
         }
     }
 
+    /**
+     * Returns the exact height by visiting every node, so it takes O(n). getHeightBound() is
+     * the O(1) alternative.
+     */
     public int getHeight() {
         return getHeightHelper(this.root);
     }
 
+    /**
+     * Returns the number of black nodes on every path from the root to a leaf in O(1). It is
+     * kept up to date by insert and delete rather than recounted.
+     */
+    public int getBlackHeight() {
+        return this.blackHeight;
+    }
+
+    /**
+     * Returns an upper bound on getHeight() in O(1). No path can have two red nodes in a row,
+     * so the height is between getBlackHeight() and twice that.
+     */
+    public int getHeightBound() {
+        return 2 * this.blackHeight;
+    }
+
+    /**
+     * Turns the operation counters on or off. Turning them on starts again from zero. While
+     * they are off, or if the JVM runs with -DRedBlackTree.statistics=false, the tree pays
+     * at most one null check per counted event.
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        this.counters = enabled && STATISTICS_SUPPORTED ? new Counters() : null;
+        publishStatistics();
+    }
+
+    public boolean isStatisticsEnabled() {
+        return this.counters != null;
+    }
+
+    /**
+     * Returns a snapshot of the counters and shape of the tree. The counters are all zero if
+     * statistics are off.
+     */
+    public RedBlackTreeStatistics getStatistics() {
+        Counters counters = this.counters == null ? new Counters() : this.counters;
+        return new RedBlackTreeStatistics(counters.comparisons, counters.rotations, counters.recolorings,
+                counters.inserts, counters.deletes, counters.searches, getSize(), this.blackHeight);
+    }
+
+    /**
+     * Takes a snapshot for other threads to read through getPublishedStatistics(). The tree
+     * does this itself every PUBLISH_INTERVAL inserts, deletes or searches while statistics
+     * are enabled; call it after other changes to publish them sooner. Like every other
+     * method, it must run on the thread that owns the tree.
+     */
+    public void publishStatistics() {
+        this.published = getStatistics();
+    }
+
+    /**
+     * Returns the snapshot last taken by publishStatistics(). Unlike getStatistics(), this may
+     * be called from any thread: it never touches the tree itself.
+     */
+    public RedBlackTreeStatistics getPublishedStatistics() {
+        RedBlackTreeStatistics published = this.published;
+        return published == null ? new RedBlackTreeStatistics(0, 0, 0, 0, 0, 0, 0, 0) : published;
+    }
+
+    private int compare(T key, T other) {
+        if (STATISTICS_SUPPORTED && this.counters != null) this.counters.comparisons++;
+        return key.compareTo(other);
+    }
+
+    /**
+     * The running totals behind getStatistics(). Plain fields, since the tree is not
+     * thread-safe anyway.
+     */
+    private static final class Counters {
+        private long comparisons;
+        private long rotations;
+        private long recolorings;
+        private long inserts;
+        private long deletes;
+        private long searches;
+    }
+
     private int getHeightHelper(TreeNode<T> node) {
         if (node == null) return 0;
         return Math.max(getHeightHelper(node.getLeftChild()), getHeightHelper(node.getRightChild())) + 1;
     }
 
     /**
-     * This private class stores information about a tree node. Tree node data must
+     * This class stores information about a tree node. Tree node data must
      * be comparable so that data can be inserted in the correct place. Because Java
      * compilers are capable of autoboxing, this doesn't affect primitive classes.
+     * Nodes do not belong to any one tree, so join and split can move them between trees.
      */
 
-    public class TreeNode<T extends Comparable<? super T>> {
+    public static class TreeNode<T extends Comparable<? super T>> {
         private final T data;
         private boolean red; // toggle to represent if a node is red or black
         private int nodesAtLocation; // for storing duplicates
+        private int subtreeSize; // keys in this subtree, duplicates included
+        private int subtreeNodes; // distinct keys in this subtree, i.e. its nodes
         private TreeNode<T> left_child;
         private TreeNode<T> right_child;
         private TreeNode<T> parent;
@@ -419,12 +1529,24 @@ public class RedBlackTree<T extends Comparable<? super T>> {
         TreeNode(T data, boolean red) {
             this.data = data;
             this.nodesAtLocation = 1;
+            this.subtreeSize = 1;
+            this.subtreeNodes = 1;
             this.red = red; // default is black node
             this.parent = null;
             this.left_child = null;
             this.right_child = null;
         }
 
+        /**
+         * Creates a black node already holding nodesAtLocation duplicates of data.
+         */
+        TreeNode(T data, int nodesAtLocation) {
+            this(data, false);
+            if (nodesAtLocation < 1) throw new IllegalArgumentException("nodesAtLocation must be positive");
+            this.nodesAtLocation = nodesAtLocation;
+            this.subtreeSize = nodesAtLocation;
+        }
+
         public TreeNode<T> getGrandparent() {
             try {
                 return this.parent.parent;
@@ -507,6 +1629,18 @@ public class RedBlackTree<T extends Comparable<? super T>> {
             return this.right_child;
         }
 
+        public int getNodesAtLocation() {
+            return this.nodesAtLocation;
+        }
+
+        public int getSubtreeSize() {
+            return this.subtreeSize;
+        }
+
+        public int getSubtreeNodes() {
+            return this.subtreeNodes;
+        }
+
         public boolean isLeaf() {
             return this.left_child == null && this.right_child == null;
         }
@@ -529,10 +1663,38 @@ public class RedBlackTree<T extends Comparable<? super T>> {
             this.right_child = node;
         }
 
+        private void setNodesAtLocation(int nodesAtLocation) {
+            this.nodesAtLocation = nodesAtLocation;
+        }
+
+        /**
+         * Recomputes the subtree sizes from the children, which must be up to date. The tree
+         * calls this bottom up on every node whose subtree changed, so subclasses that cache
+         * more about their subtree (see IntervalTree) recompute it here too.
+         */
+        void updateSubtreeSize() {
+            this.subtreeSize = this.nodesAtLocation
+                    + (this.left_child == null ? 0 : this.left_child.subtreeSize)
+                    + (this.right_child == null ? 0 : this.right_child.subtreeSize);
+            this.subtreeNodes = 1
+                    + (this.left_child == null ? 0 : this.left_child.subtreeNodes)
+                    + (this.right_child == null ? 0 : this.right_child.subtreeNodes);
+        }
+
         private void addNodeHere() {
             this.nodesAtLocation++;
         }
 
+        /**
+         * Drops one duplicate. Returns false if this was the last one, i.e. the node itself
+         * has to be unlinked.
+         */
+        private boolean removeNodeHere() {
+            if (this.nodesAtLocation == 1) return false;
+            this.nodesAtLocation--;
+            return true;
+        }
+
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
@@ -0,0 +1,249 @@
+/**
+ * Benchmark suite for RedBlackTree with java.util.TreeMap and TreeSet as baselines.
+ *
+ * For each key distribution and each size from 2^minLog2 to 2^maxLog2 it measures emplace,
+ * find and delete of every key, getHeight, and the set operations. Each result is a CSV line
+ * with the throughput, the bytes allocated per operation and the 99th percentile latency of
+ * a single operation. TreeMap stands in for the multiset (key -> count) and TreeSet for the
+ * plain set, which drops duplicates. Neither has a getHeight.
+ *
+ * Distributions:
+ *   random     - uniformly random ints, nearly all distinct
+ *   sorted     - 0, 1, 2, ... in order, the worst case for an unbalanced tree
+ *   duplicates - random ints from a range of n / 16, so every key repeats about 16 times
+ *
+ * Every configuration runs once to warm up and once for the record. Latencies come from
+ * timing each single-key operation with System.nanoTime(). That adds some tens of
+ * nanoseconds to every operation, both in the percentile and in the throughput. Bytes per
+ * operation need the HotSpot ThreadMXBean and are reported as -1 where it is missing.
+ *
+ * Usage: java -Xmx<heap> RedBlackTreeBenchmark [minLog2Keys] [maxLog2Keys]
+ * The defaults are 10 and 20. 2^24 keys need a few gigabytes of heap per structure.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class RedBlackTreeBenchmark {
+
+    private static final String[] DISTRIBUTIONS = {"random", "sorted", "duplicates"};
+    private static final int HEIGHT_REPEATS = 10;
+
+    private static boolean print;
+    private static long checksum; // keeps results alive so the JIT cannot drop the work
+
+    private interface Target {
+        void emplace(Integer key);
+        boolean find(Integer key);
+        void delete(Integer key);
+        int getHeight(); // -1 if not supported
+    }
+
+    private static Target redBlackTree() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        return new Target() {
+            public void emplace(Integer key) { tree.emplace(key); }
+            public boolean find(Integer key) { return tree.find(key) != null; }
+            public void delete(Integer key) { tree.delete(key); }
+            public int getHeight() { return tree.getHeight(); }
+        };
+    }
+
+    private static Target treeMap() {
+        TreeMap<Integer, Integer> map = new TreeMap<>();
+        return new Target() {
+            public void emplace(Integer key) { map.merge(key, 1, Integer::sum); }
+            public boolean find(Integer key) { return map.get(key) != null; }
+            public void delete(Integer key) { map.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1); }
+            public int getHeight() { return -1; }
+        };
+    }
+
+    private static Target treeSet() {
+        TreeSet<Integer> set = new TreeSet<>();
+        return new Target() {
+            public void emplace(Integer key) { set.add(key); }
+            public boolean find(Integer key) { return set.contains(key); }
+            public void delete(Integer key) { set.remove(key); }
+            public int getHeight() { return -1; }
+        };
+    }
+
+    private static Integer[] keys(String distribution, int n, long seed) {
+        Random random = new Random(seed);
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            switch (distribution) {
+                case "sorted":
+                    keys[i] = i;
+                    break;
+                case "duplicates":
+                    keys[i] = random.nextInt(Math.max(1, n / 16));
+                    break;
+                default:
+                    keys[i] = random.nextInt();
+            }
+        }
+        return keys;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void report(String structure, String distribution, int n, String operation, long operations,
+            long nanos, long bytes, long[] latencies) {
+        if (!print) return;
+        long p99 = -1;
+        if (latencies != null) {
+            Arrays.sort(latencies);
+            p99 = latencies[(int) Math.min(latencies.length - 1, (long) Math.ceil(latencies.length * 0.99) - 1)];
+        }
+        System.out.printf("%s,%s,%d,%s,%.0f,%.1f,%d%n", structure, distribution, n, operation,
+                operations * 1e9 / Math.max(1, nanos), bytes < 0 ? -1.0 : (double) bytes / operations, p99);
+    }
+
+    /*
+     * Times emplace, find and delete of every key, one at a time, plus getHeight on the full
+     * structure.
+     */
+    private static void measureSingleKeyOperations(String structure, Target target, String distribution,
+            Integer[] keys, Integer[] probes) {
+        int n = keys.length;
+        long[] latencies = new long[n];
+        String[] operations = {"emplace", "find", "delete"};
+        for (String operation : operations) {
+            Integer[] input = operation.equals("emplace") ? keys : probes;
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            long previous = start;
+            for (int i = 0; i < n; i++) {
+                Integer key = input[i];
+                switch (operation) {
+                    case "emplace":
+                        target.emplace(key);
+                        break;
+                    case "find":
+                        if (target.find(key)) checksum++;
+                        break;
+                    default:
+                        target.delete(key);
+                }
+                long now = System.nanoTime();
+                latencies[i] = now - previous;
+                previous = now;
+            }
+            long elapsed = System.nanoTime() - start;
+            bytes = bytes < 0 ? -1 : allocatedBytes() - bytes;
+            report(structure, distribution, n, operation, n, elapsed, bytes, latencies);
+
+            if (operation.equals("find") && target.getHeight() >= 0) {
+                long[] heightLatencies = new long[HEIGHT_REPEATS];
+                long heightBytes = allocatedBytes();
+                long heightStart = System.nanoTime();
+                for (int i = 0; i < HEIGHT_REPEATS; i++) {
+                    long before = System.nanoTime();
+                    checksum += target.getHeight();
+                    heightLatencies[i] = System.nanoTime() - before;
+                }
+                long heightElapsed = System.nanoTime() - heightStart;
+                heightBytes = heightBytes < 0 ? -1 : allocatedBytes() - heightBytes;
+                report(structure, distribution, n, "getHeight", HEIGHT_REPEATS, heightElapsed, heightBytes,
+                        heightLatencies);
+            }
+        }
+    }
+
+    /*
+     * Times union, intersection, difference and symmetric difference of two structures built
+     * from the two halves of keys. Each operation is a single call, so there is no percentile.
+     */
+    private static void measureSetOperations(String distribution, Integer[] keys) {
+        int n = keys.length;
+        Integer[] lower = Arrays.copyOfRange(keys, 0, n / 2);
+        Integer[] upper = Arrays.copyOfRange(keys, n / 2, n);
+        String[] operations = {"union", "intersect", "difference", "symmetricDifference"};
+        for (String operation : operations) {
+            // RedBlackTree consumes both inputs, so they are rebuilt outside the timed region
+            RedBlackTree<Integer> lhs = RedBlackTree.buildFromUnsorted(lower);
+            RedBlackTree<Integer> rhs = RedBlackTree.buildFromUnsorted(upper);
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            RedBlackTree<Integer> result;
+            switch (operation) {
+                case "union":
+                    result = RedBlackTree.union(lhs, rhs);
+                    break;
+                case "intersect":
+                    result = RedBlackTree.intersect(lhs, rhs);
+                    break;
+                case "symmetricDifference":
+                    result = RedBlackTree.symmetricDifference(lhs, rhs);
+                    break;
+                default:
+                    result = RedBlackTree.difference(lhs, rhs);
+            }
+            long elapsed = System.nanoTime() - start;
+            bytes = bytes < 0 ? -1 : allocatedBytes() - bytes;
+            checksum += result.getSize();
+            report("RedBlackTree", distribution, n, operation, 1, elapsed, bytes, null);
+
+            TreeSet<Integer> left = new TreeSet<>(Arrays.asList(lower));
+            TreeSet<Integer> right = new TreeSet<>(Arrays.asList(upper));
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            switch (operation) {
+                case "union":
+                    left.addAll(right);
+                    break;
+                case "intersect":
+                    left.retainAll(right);
+                    break;
+                case "symmetricDifference":
+                    // TreeSet has no symmetric difference: the union minus the intersection
+                    TreeSet<Integer> common = new TreeSet<>(left);
+                    common.retainAll(right);
+                    left.addAll(right);
+                    left.removeAll(common);
+                    break;
+                default:
+                    left.removeAll(right);
+            }
+            elapsed = System.nanoTime() - start;
+            bytes = bytes < 0 ? -1 : allocatedBytes() - bytes;
+            checksum += left.size();
+            report("TreeSet", distribution, n, operation, 1, elapsed, bytes, null);
+        }
+    }
+
+    public static void main(String[] args) {
+        int minLog2 = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int maxLog2 = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.out.println("===================Analysis Start===================");
+        System.out.println("Structure,Distribution,Keys,Operation,OpsPerSecond,BytesPerOp,P99Nanos");
+        for (String distribution : DISTRIBUTIONS) {
+            for (int log2 = minLog2; log2 <= maxLog2; log2++) {
+                Integer[] keys = keys(distribution, 1 << log2, log2);
+                Integer[] probes = keys.clone();
+                java.util.Collections.shuffle(Arrays.asList(probes), new Random(-log2));
+                for (boolean warm : new boolean[] {false, true}) {
+                    print = warm;
+                    measureSingleKeyOperations("RedBlackTree", redBlackTree(), distribution, keys, probes);
+                    measureSingleKeyOperations("TreeMap", treeMap(), distribution, keys, probes);
+                    measureSingleKeyOperations("TreeSet", treeSet(), distribution, keys, probes);
+                    measureSetOperations(distribution, keys);
+                }
+            }
+        }
+        System.out.println("===================Analysis Complete================");
+        System.err.println("checksum " + checksum);
+    }
+}
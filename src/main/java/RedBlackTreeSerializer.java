@@ -0,0 +1,263 @@
+/**
+ * Writes a RedBlackTree to a channel as a compact binary stream and reads it back.
+ *
+ * The stream is a header followed by one record per distinct key, in ascending order:
+ *
+ *     header: magic "RBSNAPSH" (8 bytes), version (int), distinct keys (long)
+ *     record: duplicates (varint), key length (varint), key bytes
+ *
+ * Keys are turned into bytes by a pluggable KeyCodec. Both directions stream through one
+ * fixed-size buffer, so a file of any size is written straight from the tree and read
+ * straight into a new one. Because the records are sorted and counted, read() links the tree
+ * in O(n) with no rotations, instead of inserting the keys one by one.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class RedBlackTreeSerializer {
+
+    private static final long MAGIC = 0x5242534E41505348L; // "RBSNAPSH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8 + 4 + 8;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Converts keys to and from bytes. decode() gets a buffer holding exactly the bytes that
+     * encode() wrote for one key.
+     */
+    public interface KeyCodec<T> {
+        int encodedLength(T key);
+
+        void encode(T key, ByteBuffer out);
+
+        T decode(ByteBuffer in);
+    }
+
+    public static final KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+        public int encodedLength(Integer key) { return Integer.BYTES; }
+        public void encode(Integer key, ByteBuffer out) { out.putInt(key); }
+        public Integer decode(ByteBuffer in) { return in.getInt(); }
+    };
+
+    public static final KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        public int encodedLength(Long key) { return Long.BYTES; }
+        public void encode(Long key, ByteBuffer out) { out.putLong(key); }
+        public Long decode(ByteBuffer in) { return in.getLong(); }
+    };
+
+    /**
+     * UTF-8, measured and written char by char, so a key is neither encoded twice nor copied
+     * into a temporary array. The bytes are the same as String.getBytes(UTF_8), which writes
+     * an unpaired surrogate as '?'.
+     */
+    public static final KeyCodec<String> STRING = new KeyCodec<String>() {
+        public int encodedLength(String key) {
+            int length = 0;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (isSurrogatePair(key, i)) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += Character.isSurrogate(c) ? 1 : 3;
+                }
+            }
+            return length;
+        }
+
+        public void encode(String key, ByteBuffer out) {
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (c < 0x80) {
+                    out.put((byte) c);
+                } else if (c < 0x800) {
+                    out.put((byte) (0xC0 | c >> 6));
+                    out.put((byte) (0x80 | c & 0x3F));
+                } else if (isSurrogatePair(key, i)) {
+                    int codePoint = Character.toCodePoint(c, key.charAt(++i));
+                    out.put((byte) (0xF0 | codePoint >> 18));
+                    out.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                    out.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                    out.put((byte) (0x80 | codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    out.put((byte) '?');
+                } else {
+                    out.put((byte) (0xE0 | c >> 12));
+                    out.put((byte) (0x80 | c >> 6 & 0x3F));
+                    out.put((byte) (0x80 | c & 0x3F));
+                }
+            }
+        }
+
+        public String decode(ByteBuffer in) { return StandardCharsets.UTF_8.decode(in).toString(); }
+    };
+
+    private static boolean isSurrogatePair(String key, int index) {
+        return Character.isHighSurrogate(key.charAt(index)) && index + 1 < key.length()
+                && Character.isLowSurrogate(key.charAt(index + 1));
+    }
+
+    private RedBlackTreeSerializer() {
+    }
+
+    public static <T extends Comparable<? super T>> void write(RedBlackTree<T> tree, Path path,
+            KeyCodec<? super T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(tree, channel, codec);
+        }
+    }
+
+    /**
+     * Writes tree to channel. The channel is left open.
+     */
+    public static <T extends Comparable<? super T>> void write(RedBlackTree<T> tree, WritableByteChannel channel,
+            KeyCodec<? super T> codec) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        buffer.putLong(MAGIC).putInt(VERSION).putLong(tree.getSize());
+        RedBlackTree.TreeNode<T> node = tree.getRoot();
+        while (node != null && node.getLeftChild() != null) node = node.getLeftChild();
+        // walk the nodes in order through the parent pointers
+        while (node != null) {
+            T key = node.getData();
+            int length = codec.encodedLength(key);
+            int recordBytes = 10 + length; // two varints of at most 5 bytes each
+            if (buffer.remaining() < recordBytes) {
+                drain(buffer, channel);
+                if (buffer.capacity() < recordBytes) buffer = ByteBuffer.allocate(recordBytes);
+            }
+            putVarint(buffer, node.getNodesAtLocation());
+            putVarint(buffer, length);
+            int start = buffer.position();
+            codec.encode(key, buffer);
+            if (buffer.position() - start != length) {
+                throw new IllegalStateException("Codec wrote " + (buffer.position() - start)
+                        + " bytes for a key of encoded length " + length);
+            }
+            node = successor(node);
+        }
+        drain(buffer, channel);
+    }
+
+    public static <T extends Comparable<? super T>> RedBlackTree<T> read(Path path, KeyCodec<T> codec)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, codec);
+        }
+    }
+
+    /**
+     * Reads a tree written by write() from channel in O(n). The channel is left open.
+     */
+    public static <T extends Comparable<? super T>> RedBlackTree<T> read(ReadableByteChannel channel,
+            KeyCodec<T> codec) throws IOException {
+        Reader reader = new Reader(channel);
+        reader.require(HEADER_BYTES);
+        if (reader.buffer.getLong() != MAGIC) throw new IOException("Not a RedBlackTree snapshot");
+        int version = reader.buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+        long count = reader.buffer.getLong();
+        if (count < 0 || count > Integer.MAX_VALUE) throw new IOException("Corrupt key count " + count);
+        try {
+            return RedBlackTree.linkFromSorted((int) count, () -> {
+                try {
+                    int duplicates = reader.getVarint();
+                    int length = reader.getVarint();
+                    reader.require(length);
+                    ByteBuffer key = reader.buffer.slice();
+                    key.limit(length);
+                    reader.buffer.position(reader.buffer.position() + length);
+                    return new RedBlackTree.TreeNode<>(codec.decode(key), duplicates);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static <T extends Comparable<? super T>> RedBlackTree.TreeNode<T> successor(RedBlackTree.TreeNode<T> node) {
+        if (node.getRightChild() != null) {
+            node = node.getRightChild();
+            while (node.getLeftChild() != null) node = node.getLeftChild();
+            return node;
+        }
+        RedBlackTree.TreeNode<T> parent = node.getParent();
+        while (parent != null && node == parent.getRightChild()) {
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /*
+     * Refills one buffer from the channel on demand.
+     */
+    private static final class Reader {
+        private final ReadableByteChannel channel;
+        private ByteBuffer buffer;
+
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            this.buffer.flip(); // empty, ready for reading
+        }
+
+        /**
+         * Makes sure at least bytes bytes are buffered.
+         */
+        void require(int bytes) throws IOException {
+            if (this.buffer.remaining() >= bytes) return;
+            if (this.buffer.capacity() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(bytes);
+                larger.put(this.buffer);
+                this.buffer = larger;
+            } else {
+                this.buffer.compact();
+            }
+            while (this.buffer.position() < bytes) {
+                if (this.channel.read(this.buffer) < 0) throw new EOFException("Snapshot is truncated");
+            }
+            this.buffer.flip();
+        }
+
+        int getVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                require(1);
+                byte next = this.buffer.get();
+                value |= (next & 0x7F) << shift;
+                if (next >= 0) return value;
+            }
+            throw new IOException("Corrupt varint");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * A snapshot of a RedBlackTree's operation counters and shape, from getStatistics().
+ *
+ * Comparisons are counted in insert, delete and find; rotations in every rotation; and
+ * recolorings wherever the fixups repaint a node on their own (the color swap that comes
+ * with each rotation is not counted again). The counters only run while the tree has
+ * statistics enabled.
+ *
+ * register() publishes a tree's statistics as a JMX MXBean. The tree is not thread-safe, so
+ * the JMX thread never reads it directly: it reads the snapshot the owning thread last
+ * published through a volatile field, which lags by at most 1024 operations of each kind.
+ * That is fine for monitoring.
+ */
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class RedBlackTreeStatistics implements RedBlackTreeStatisticsMXBean {
+
+    private final long comparisons;
+    private final long rotations;
+    private final long recolorings;
+    private final long inserts;
+    private final long deletes;
+    private final long searches;
+    private final int size;
+    private final int blackHeight;
+
+    RedBlackTreeStatistics(long comparisons, long rotations, long recolorings, long inserts, long deletes,
+            long searches, int size, int blackHeight) {
+        this.comparisons = comparisons;
+        this.rotations = rotations;
+        this.recolorings = recolorings;
+        this.inserts = inserts;
+        this.deletes = deletes;
+        this.searches = searches;
+        this.size = size;
+        this.blackHeight = blackHeight;
+    }
+
+    /**
+     * Registers tree's statistics with the platform MBean server under name, e.g.
+     * "datastructures:type=RedBlackTree,name=orders", and returns the ObjectName to
+     * unregister it with later. Call it from the thread that owns tree, since it publishes a
+     * first snapshot.
+     */
+    public static ObjectName register(RedBlackTree<?> tree, String name) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        tree.publishStatistics();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Live(tree), objectName);
+        return objectName;
+    }
+
+    public static void unregister(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    public long getComparisons() {
+        return this.comparisons;
+    }
+
+    public long getRotations() {
+        return this.rotations;
+    }
+
+    public long getRecolorings() {
+        return this.recolorings;
+    }
+
+    public long getInserts() {
+        return this.inserts;
+    }
+
+    public long getDeletes() {
+        return this.deletes;
+    }
+
+    public long getSearches() {
+        return this.searches;
+    }
+
+    /**
+     * Returns the number of inserts, deletes and searches together.
+     */
+    public long getOperations() {
+        return this.inserts + this.deletes + this.searches;
+    }
+
+    public double getComparisonsPerOperation() {
+        long operations = getOperations();
+        return operations == 0 ? 0 : (double) this.comparisons / operations;
+    }
+
+    /**
+     * Returns the number of distinct keys.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    public int getBlackHeight() {
+        return this.blackHeight;
+    }
+
+    /**
+     * Returns an upper bound on the height: twice the black height.
+     */
+    public int getHeightBound() {
+        return 2 * this.blackHeight;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("comparisons=%d rotations=%d recolorings=%d inserts=%d deletes=%d searches=%d"
+                + " comparisonsPerOperation=%.2f size=%d blackHeight=%d heightBound=%d", this.comparisons,
+                this.rotations, this.recolorings, this.inserts, this.deletes, this.searches,
+                getComparisonsPerOperation(), this.size, this.blackHeight, getHeightBound());
+    }
+
+    /*
+     * The registered MXBean. Each attribute is one volatile read of the published snapshot.
+     */
+    private static final class Live implements RedBlackTreeStatisticsMXBean {
+        private final RedBlackTree<?> tree;
+
+        Live(RedBlackTree<?> tree) {
+            this.tree = tree;
+        }
+
+        public long getComparisons() { return this.tree.getPublishedStatistics().getComparisons(); }
+        public long getRotations() { return this.tree.getPublishedStatistics().getRotations(); }
+        public long getRecolorings() { return this.tree.getPublishedStatistics().getRecolorings(); }
+        public long getInserts() { return this.tree.getPublishedStatistics().getInserts(); }
+        public long getDeletes() { return this.tree.getPublishedStatistics().getDeletes(); }
+        public long getSearches() { return this.tree.getPublishedStatistics().getSearches(); }
+        public long getOperations() { return this.tree.getPublishedStatistics().getOperations(); }
+        public double getComparisonsPerOperation() { return this.tree.getPublishedStatistics().getComparisonsPerOperation(); }
+        public int getSize() { return this.tree.getPublishedStatistics().getSize(); }
+        public int getBlackHeight() { return this.tree.getPublishedStatistics().getBlackHeight(); }
+        public int getHeightBound() { return this.tree.getPublishedStatistics().getHeightBound(); }
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * The attributes RedBlackTreeStatistics.register() publishes over JMX.
+ */
+public interface RedBlackTreeStatisticsMXBean {
+
+    long getComparisons();
+
+    long getRotations();
+
+    long getRecolorings();
+
+    long getInserts();
+
+    long getDeletes();
+
+    long getSearches();
+
+    long getOperations();
+
+    double getComparisonsPerOperation();
+
+    int getSize();
+
+    int getBlackHeight();
+
+    int getHeightBound();
+}
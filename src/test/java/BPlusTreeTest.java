@@ -0,0 +1,81 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class BPlusTreeTest {
+
+	private static List<Integer> toList(Iterable<Integer> keys) {
+		List<Integer> list = new ArrayList<>();
+		for (int key : keys) list.add(key);
+		return list;
+	}
+
+	private static List<Integer> expand(Map<Integer, Integer> counts) {
+		List<Integer> list = new ArrayList<>();
+		for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+			for (int i = 0; i < entry.getValue(); i++) list.add(entry.getKey());
+		}
+		return list;
+	}
+
+	@Test
+	public void randomOperationsTest() {
+		for (int order : new int[] {3, 4, 5, 16, 64}) {
+			Random random = new Random(order);
+			BPlusTree<Integer> tree = new BPlusTree<>(order);
+			TreeMap<Integer, Integer> expected = new TreeMap<>();
+			for (int round = 0; round < 4; round++) {
+				for (int i = 0; i < 3000; i++) {
+					int key = random.nextInt(2000);
+					tree.emplace(key);
+					expected.merge(key, 1, Integer::sum);
+				}
+				for (int i = 0; i < 3500; i++) {
+					int key = random.nextInt(2000);
+					tree.delete(key);
+					expected.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+				}
+				assertEquals(expected.size(), tree.getSize());
+				assertEquals(expand(expected), toList(tree));
+				for (int key = 0; key < 2000; key += 7) {
+					assertEquals(expected.containsKey(key), tree.contains(key));
+					assertEquals(expected.getOrDefault(key, 0).intValue(), tree.getNodesAtLocation(key));
+				}
+			}
+			int levels = 1;
+			for (long capacity = order + 1; capacity < tree.getSize(); capacity *= order / 2 + 1) levels++;
+			assertTrue(tree.getHeight() <= levels + 1);
+		}
+	}
+
+	@Test
+	public void rangeScanTest() {
+		BPlusTree<Integer> tree = new BPlusTree<>(4);
+		for (int i = 0; i < 100; i += 2) tree.emplace(i);
+		tree.emplace(10);
+		assertEquals(Arrays.asList(10, 10, 12), toList(tree.subSet(9, 14)));
+		assertEquals(Arrays.asList(10, 10, 12, 14), toList(tree.subSet(9, true, 14, true)));
+		assertEquals(Arrays.asList(12), toList(tree.subSet(10, false, 14, false)));
+		assertTrue(toList(tree.subSet(41, 41)).isEmpty());
+		assertEquals(50, toList(tree.subSet(-5, 500)).size() - 1);
+	}
+
+	@Test
+	public void deleteEverythingTest() {
+		BPlusTree<Integer> tree = new BPlusTree<>(3);
+		for (int i = 0; i < 1000; i++) tree.emplace(i);
+		for (int i = 999; i >= 0; i--) tree.delete(i);
+		assertTrue(tree.isEmpty());
+		assertEquals(1, tree.getHeight());
+		assertFalse(tree.iterator().hasNext());
+		tree.emplace(5);
+		assertEquals(Integer.valueOf(5), tree.find(5));
+	}
+
+}
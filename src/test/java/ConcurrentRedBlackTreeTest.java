@@ -0,0 +1,67 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ConcurrentRedBlackTreeTest {
+
+	@Test
+	public void singleThreadTest() {
+		ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+		for (int i = 0; i < 100; i++) tree.emplace(i);
+		tree.emplace(50);
+		tree.delete(10);
+		assertEquals(99, tree.getSize());
+		assertEquals(50, (int) tree.find(50));
+		assertNull(tree.find(10));
+		List<Integer> scanned = new ArrayList<>();
+		tree.forEachInRange(8, 12, scanned::add);
+		assertEquals(Arrays.asList(8, 9, 11, 12), scanned);
+	}
+
+	@Test
+	public void readersDuringWritesTest() throws InterruptedException {
+		ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+		// even keys stay put; writers churn the odd ones
+		for (int i = 0; i < 4000; i += 2) tree.emplace(i);
+		Thread writer = new Thread(() -> {
+			for (int round = 0; round < 20; round++) {
+				for (int i = 1; i < 4000; i += 2) tree.emplace(i);
+				for (int i = 1; i < 4000; i += 2) tree.delete(i);
+			}
+		});
+		List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		Thread[] readers = new Thread[4];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(() -> {
+				try {
+					while (writer.isAlive()) {
+						for (int i = 0; i < 4000; i += 50) {
+							assertTrue(tree.contains(i));
+						}
+						List<Integer> scanned = new ArrayList<>();
+						tree.forEachInRange(1000, 1100, scanned::add);
+						for (int i = 1; i < scanned.size(); i++) assertTrue(scanned.get(i - 1) < scanned.get(i));
+						for (int i = 1000; i <= 1100; i += 2) assertTrue(scanned.contains(i));
+						int size = tree.getSize();
+						assertTrue(size >= 2000 && size <= 4000);
+						int height = tree.getHeight();
+						assertTrue(height >= 11 && height <= 24); // between log2(2000) and 2 log2(4001)
+					}
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			});
+		}
+		writer.start();
+		for (Thread reader : readers) reader.start();
+		writer.join();
+		for (Thread reader : readers) reader.join();
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(2000, tree.getSize());
+	}
+
+}
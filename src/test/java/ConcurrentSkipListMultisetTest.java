@@ -0,0 +1,82 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ConcurrentSkipListMultisetTest {
+
+	private static List<Integer> toList(Iterable<Integer> keys) {
+		List<Integer> list = new ArrayList<>();
+		for (int key : keys) list.add(key);
+		return list;
+	}
+
+	@Test
+	public void singleThreadTest() {
+		ConcurrentSkipListMultiset<Integer> set = new ConcurrentSkipListMultiset<>();
+		for (int i = 0; i < 100; i++) set.emplace(i);
+		set.emplace(50);
+		set.delete(10);
+		set.delete(10);
+		assertEquals(99, set.getSize());
+		assertEquals(2, set.getNodesAtLocation(50));
+		assertEquals(50, (int) set.find(50));
+		assertNull(set.find(10));
+		assertEquals(Arrays.asList(8, 9, 11), toList(set.subSet(8, 12)));
+		assertEquals(Arrays.asList(8, 9, 11, 12), toList(set.subSet(8, true, 12, true)));
+		List<Integer> visited = new ArrayList<>();
+		set.forEachInRange(8, 12, visited::add);
+		assertEquals(Arrays.asList(8, 9, 11, 12), visited);
+		assertEquals(Arrays.asList(50, 50, 51), toList(set.subSet(49, false, 52, false)));
+		assertEquals(101 - 1, toList(set).size());
+	}
+
+	@Test
+	public void concurrentWritersTest() throws InterruptedException {
+		ConcurrentSkipListMultiset<Integer> set = new ConcurrentSkipListMultiset<>();
+		Thread[] writers = new Thread[8];
+		for (int w = 0; w < writers.length; w++) {
+			writers[w] = new Thread(() -> {
+				// every writer adds each key three times and takes two back, all racing on the same keys
+				for (int round = 0; round < 3; round++) {
+					for (int i = 0; i < 2000; i++) set.emplace(i);
+				}
+				for (int round = 0; round < 2; round++) {
+					for (int i = 0; i < 2000; i++) set.delete(i);
+				}
+			});
+		}
+		for (Thread writer : writers) writer.start();
+		for (Thread writer : writers) writer.join();
+		assertEquals(2000, set.getSize());
+		for (int i = 0; i < 2000; i++) assertEquals(writers.length, set.getNodesAtLocation(i));
+	}
+
+	@Test
+	public void churnTest() throws InterruptedException {
+		ConcurrentSkipListMultiset<Integer> set = new ConcurrentSkipListMultiset<>();
+		for (int i = 0; i < 1000; i += 2) set.emplace(i);
+		Thread[] writers = new Thread[4];
+		for (int w = 0; w < writers.length; w++) {
+			writers[w] = new Thread(() -> {
+				// odd keys appear and disappear, so entries keep dying and being replaced
+				for (int round = 0; round < 50; round++) {
+					for (int i = 1; i < 1000; i += 2) set.emplace(i);
+					for (int i = 1; i < 1000; i += 2) set.delete(i);
+				}
+			});
+		}
+		for (Thread writer : writers) writer.start();
+		while (writers[0].isAlive()) {
+			List<Integer> scanned = toList(set.subSet(100, 200));
+			for (int i = 100; i < 200; i += 2) assertTrue(scanned.contains(i));
+			for (int i = 1; i < scanned.size(); i++) assertTrue(scanned.get(i - 1) <= scanned.get(i));
+		}
+		for (Thread writer : writers) writer.join();
+		assertEquals(500, set.getSize());
+		for (int i = 1; i < 1000; i += 2) assertFalse(set.contains(i));
+	}
+
+}
@@ -0,0 +1,73 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public class IntervalTreeTest {
+
+	private static List<IntervalTree.Interval<Integer>> toList(Iterator<IntervalTree.Interval<Integer>> intervals) {
+		List<IntervalTree.Interval<Integer>> list = new ArrayList<>();
+		while (intervals.hasNext()) list.add(intervals.next());
+		return list;
+	}
+
+	private static List<IntervalTree.Interval<Integer>> bruteForce(List<IntervalTree.Interval<Integer>> intervals, int from, int to) {
+		List<IntervalTree.Interval<Integer>> matches = new ArrayList<>();
+		for (IntervalTree.Interval<Integer> interval : intervals) {
+			if (interval.overlaps(from, to)) matches.add(interval);
+		}
+		Collections.sort(matches);
+		return matches;
+	}
+
+	@Test
+	public void halfOpenTest() {
+		IntervalTree<Integer> tree = new IntervalTree<>();
+		tree.emplace(0, 10);
+		tree.emplace(10, 20);
+		tree.emplace(5, 15);
+		tree.emplace(5, 15);
+		assertEquals(Arrays.asList(new IntervalTree.Interval<>(0, 10), new IntervalTree.Interval<>(5, 15),
+				new IntervalTree.Interval<>(5, 15)), toList(tree.stabbing(9)));
+		assertEquals(Arrays.asList(new IntervalTree.Interval<>(5, 15), new IntervalTree.Interval<>(5, 15),
+				new IntervalTree.Interval<>(10, 20)), toList(tree.stabbing(10)));
+		assertTrue(toList(tree.stabbing(20)).isEmpty());
+		assertEquals(4, toList(tree.overlapping(9, 10)).size());
+		assertEquals(Integer.valueOf(20), tree.getMaxEnd());
+	}
+
+	@Test
+	public void randomOverlapTest() {
+		Random random = new Random(11);
+		IntervalTree<Integer> tree = new IntervalTree<>();
+		List<IntervalTree.Interval<Integer>> expected = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			int start = random.nextInt(10000);
+			IntervalTree.Interval<Integer> interval = new IntervalTree.Interval<>(start, start + random.nextInt(300));
+			tree.emplace(interval);
+			expected.add(interval);
+		}
+		for (int i = 0; i < 1000; i++) {
+			IntervalTree.Interval<Integer> trash = expected.remove(random.nextInt(expected.size()));
+			tree.delete(trash);
+		}
+		assertEquals(Collections.max(expected, (a, b) -> a.getEnd() - b.getEnd()).getEnd(), tree.getMaxEnd());
+		for (int i = 0; i < 200; i++) {
+			int from = random.nextInt(10500);
+			int to = from + random.nextInt(100);
+			assertEquals(bruteForce(expected, from, to), toList(tree.overlapping(from, to)));
+			assertEquals(bruteForce(expected, from, from), toList(tree.stabbing(from)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void reversedIntervalTest() {
+		new IntervalTree.Interval<>(2, 1);
+	}
+
+}
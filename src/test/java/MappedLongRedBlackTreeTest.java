@@ -0,0 +1,126 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class MappedLongRedBlackTreeTest {
+
+	private static final int SMALL_CHUNK = 1 << 12; // forces the file across many chunks
+
+	private static Path newTreeFile() throws IOException {
+		Path file = Files.createTempFile("mapped-rbt", ".bin");
+		Files.delete(file);
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void randomOperationsTest() throws IOException {
+		Random random = new Random(11);
+		TreeMap<Long, Integer> expected = new TreeMap<>();
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(newTreeFile(), SMALL_CHUNK)) {
+			for (int i = 0; i < 20000; i++) {
+				long key = random.nextInt(3000);
+				if (random.nextInt(3) > 0) {
+					tree.emplace(key);
+					expected.merge(key, 1, Integer::sum);
+				} else {
+					tree.delete(key);
+					expected.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+				}
+			}
+			assertEquals(expected.size(), tree.getSize());
+			assertTrue(tree.getHeight() <= 2 * (Math.log(expected.size() + 1) / Math.log(2)));
+			for (long key = 0; key < 3000; key++) {
+				long node = tree.find(key);
+				assertEquals(expected.containsKey(key), node != MappedLongRedBlackTree.NOT_FOUND);
+				if (node != MappedLongRedBlackTree.NOT_FOUND) {
+					assertEquals(key, tree.getNodeKey(node));
+					assertEquals((int) expected.get(key), tree.getNodesAtLocation(node));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void reopenTest() throws IOException {
+		Path file = newTreeFile();
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(file, SMALL_CHUNK)) {
+			for (long i = 0; i < 1000; i++) tree.emplace(i * 7);
+			tree.delete(0);
+		}
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(file, SMALL_CHUNK)) {
+			assertEquals(999, tree.getSize());
+			assertFalse(tree.contains(0));
+			assertTrue(tree.contains(7 * 999));
+			tree.emplace(1);
+			assertTrue(tree.contains(1));
+		}
+	}
+
+	@Test
+	public void fileGrowsWithTreeTest() throws IOException {
+		Path file = newTreeFile();
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(file)) {
+			assertTrue(Files.size(file) <= 1 << 16);
+			for (long i = 0; i < 10000; i++) tree.emplace(i);
+		}
+		// 10000 nodes of 32 bytes, at most doubled, instead of a whole default chunk
+		assertTrue(Files.size(file) <= 1 << 20);
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(file)) {
+			assertEquals(10000, tree.getSize());
+			assertTrue(tree.contains(9999));
+		}
+	}
+
+	@Test
+	public void chunkSizeLimitsTest() throws IOException {
+		for (int chunkBytes : new int[] {0, 32, 48, 65}) {
+			try {
+				new MappedLongRedBlackTree(newTreeFile(), chunkBytes).close();
+				fail("accepted a chunk size of " + chunkBytes);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		// the smallest chunk holds just the header, then two nodes per chunk
+		Path file = newTreeFile();
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(file, 64)) {
+			for (long i = 0; i < 300; i++) tree.emplace(i * 3);
+		}
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(file, 64)) {
+			assertEquals(300, tree.getSize());
+			for (long i = 0; i < 300; i++) assertTrue(tree.contains(i * 3));
+			assertFalse(tree.contains(1));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsForeignFileTest() throws IOException {
+		Path file = newTreeFile();
+		Files.write(file, new byte[64]);
+		new MappedLongRedBlackTree(file);
+	}
+
+	@Test
+	public void rangeScanTest() throws IOException {
+		try (MappedLongRedBlackTree tree = new MappedLongRedBlackTree(newTreeFile(), SMALL_CHUNK)) {
+			for (long i = 100; i > 0; i--) tree.emplace(i * 10);
+			tree.emplace(50);
+			List<Long> scanned = new ArrayList<>();
+			tree.forEachInRange(35, 70, scanned::add);
+			assertEquals(Arrays.asList(40L, 50L, 50L, 60L, 70L), scanned);
+			scanned.clear();
+			tree.forEach(scanned::add);
+			assertEquals(101, scanned.size());
+			for (int i = 1; i < scanned.size(); i++) assertTrue(scanned.get(i - 1) <= scanned.get(i));
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class PersistentRedBlackTreeTest {
+
+	private static List<Integer> toList(Iterable<Integer> keys) {
+		List<Integer> list = new ArrayList<>();
+		for (int key : keys) list.add(key);
+		return list;
+	}
+
+	@Test
+	public void snapshotIsStableTest() {
+		PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+		for (int i = 0; i < 5; i++) tree.emplace(i);
+		PersistentRedBlackTree.Snapshot<Integer> before = tree.snapshot();
+		tree.emplace(2);
+		tree.delete(0);
+		tree.emplace(10);
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), toList(before));
+		assertEquals(5, before.getSize());
+		assertEquals(Arrays.asList(1, 2, 2, 3, 4, 10), toList(tree.snapshot()));
+		assertEquals(2, tree.snapshot().getNodesAtLocation(2));
+		assertSame(tree.snapshot(), tree.snapshot());
+	}
+
+	@Test
+	public void deleteMissingKeyTest() {
+		PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+		tree.emplace(1);
+		PersistentRedBlackTree.Snapshot<Integer> before = tree.snapshot();
+		assertSame(before, tree.delete(2));
+	}
+
+	@Test
+	public void randomOperationsTest() {
+		Random random = new Random(3);
+		PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+		TreeMap<Integer, Integer> expected = new TreeMap<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(1000);
+			if (random.nextInt(3) > 0) {
+				tree.emplace(key);
+				expected.merge(key, 1, Integer::sum);
+			} else {
+				tree.delete(key);
+				expected.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+			}
+		}
+		PersistentRedBlackTree.Snapshot<Integer> snapshot = tree.snapshot();
+		assertEquals(expected.size(), snapshot.getSize());
+		assertTrue(snapshot.getHeight() <= 2 * (Math.log(expected.size() + 1) / Math.log(2)));
+		for (int key = 0; key < 1000; key++) {
+			assertEquals(expected.getOrDefault(key, 0).intValue(), snapshot.getNodesAtLocation(key));
+		}
+	}
+
+}
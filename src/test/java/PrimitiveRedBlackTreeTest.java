@@ -0,0 +1,104 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+public class PrimitiveRedBlackTreeTest {
+
+	@Test
+	public void emptyTest() {
+		IntRedBlackTree tree = new IntRedBlackTree();
+		assertEquals(0, tree.getSize());
+		assertEquals(0, tree.getHeight());
+		assertFalse(tree.contains(1));
+		tree.delete(1); //should delete nothing
+		assertEquals(IntRedBlackTree.NOT_FOUND, tree.find(1));
+	}
+
+	@Test
+	public void duplicateTest() {
+		IntRedBlackTree tree = new IntRedBlackTree();
+		tree.emplace(7);
+		tree.emplace(7);
+		assertEquals(1, tree.getSize());
+		assertEquals(2, tree.getNodesAtLocation(tree.find(7)));
+		tree.delete(7);
+		assertTrue(tree.contains(7));
+		tree.delete(7);
+		assertFalse(tree.contains(7));
+	}
+
+	@Test
+	public void randomIntTest() {
+		Random random = new Random(7);
+		IntRedBlackTree tree = new IntRedBlackTree(1);
+		TreeMap<Integer, Integer> expected = new TreeMap<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(2000) - 1000;
+			if (random.nextInt(3) > 0) {
+				tree.emplace(key);
+				expected.merge(key, 1, Integer::sum);
+			} else {
+				tree.delete(key);
+				expected.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+			}
+		}
+		assertValid(tree);
+		assertEquals(expected.size(), tree.getSize());
+		for (int key = -1000; key < 1000; key++) {
+			int node = tree.find(key);
+			assertEquals(expected.containsKey(key), node != IntRedBlackTree.NOT_FOUND);
+			if (node != IntRedBlackTree.NOT_FOUND) {
+				assertEquals(key, tree.getKey(node));
+				assertEquals((int) expected.get(key), tree.getNodesAtLocation(node));
+			}
+		}
+	}
+
+	@Test
+	public void sortedLongTest() {
+		LongRedBlackTree tree = new LongRedBlackTree();
+		int size = 1 << 16;
+		for (long i = 0; i < size; i++) tree.emplace(i << 32);
+		assertEquals(size, tree.getSize());
+		assertTrue(tree.getHeight() <= 2 * 17);
+		for (long i = 0; i < size; i += 2) tree.delete(i << 32);
+		assertEquals(size / 2, tree.getSize());
+		for (long i = 0; i < size; i++) assertEquals(i % 2 == 1, tree.contains(i << 32));
+		assertFalse(tree.contains(1));
+	}
+
+	@Test
+	public void slotReuseTest() {
+		IntRedBlackTree tree = new IntRedBlackTree(4);
+		for (int round = 0; round < 100; round++) {
+			for (int i = 0; i < 4; i++) tree.emplace(i);
+			for (int i = 0; i < 4; i++) tree.delete(i);
+		}
+		assertEquals(0, tree.getSize());
+		assertEquals(5, tree.left.length); // freed slots were reused, the arrays never grew
+	}
+
+	/*
+	 * Checks the binary search tree ordering and red-black properties by walking the arrays.
+	 */
+	private static void assertValid(IntRedBlackTree tree) {
+		assertFalse(tree.red[tree.root]);
+		assertFalse(tree.red[PrimitiveRedBlackTree.NIL]);
+		checkSubtree(tree, tree.root, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	private static int checkSubtree(IntRedBlackTree tree, int node, long low, long high) {
+		if (node == PrimitiveRedBlackTree.NIL) return 1;
+		int key = tree.getKey(node);
+		assertTrue(low < key && key < high);
+		int left = tree.left[node];
+		int right = tree.right[node];
+		assertFalse(tree.red[node] && (tree.red[left] || tree.red[right]));
+		int blackHeight = checkSubtree(tree, left, low, key);
+		assertEquals(blackHeight, checkSubtree(tree, right, key, high));
+		return blackHeight + (tree.red[node] ? 0 : 1);
+	}
+
+}
@@ -0,0 +1,91 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class RedBlackTreeSerializerTest {
+
+	private static <T extends Comparable<? super T>> List<T> toList(Iterable<T> keys) {
+		List<T> list = new ArrayList<>();
+		for (T key : keys) list.add(key);
+		return list;
+	}
+
+	private static <T extends Comparable<? super T>> byte[] write(RedBlackTree<T> tree, RedBlackTreeSerializer.KeyCodec<? super T> codec) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RedBlackTreeSerializer.write(tree, Channels.newChannel(bytes), codec);
+		return bytes.toByteArray();
+	}
+
+	private static <T extends Comparable<? super T>> RedBlackTree<T> read(byte[] bytes, RedBlackTreeSerializer.KeyCodec<T> codec) throws IOException {
+		return RedBlackTreeSerializer.read(Channels.newChannel(new ByteArrayInputStream(bytes)), codec);
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		Random random = new Random(3);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int i = 0; i < 100000; i++) tree.emplace(random.nextInt(50000));
+		RedBlackTree<Integer> copy = read(write(tree, RedBlackTreeSerializer.INTEGER), RedBlackTreeSerializer.INTEGER);
+		assertEquals(toList(tree), toList(copy));
+		assertEquals(tree.getSize(), copy.getSize());
+		assertEquals(100000, copy.getRoot().getSubtreeSize());
+		assertTrue(copy.getHeight() <= 2 * (32 - Integer.numberOfLeadingZeros(copy.getSize())));
+		copy.emplace(-1);
+		copy.delete(tree.select(0));
+		assertEquals(Integer.valueOf(-1), copy.select(0));
+
+		RedBlackTree<Integer> empty = read(write(new RedBlackTree<Integer>(), RedBlackTreeSerializer.INTEGER), RedBlackTreeSerializer.INTEGER);
+		assertNull(empty.getRoot());
+		assertEquals(0, empty.getSize());
+	}
+
+	@Test
+	public void fileRoundTripTest() throws IOException {
+		char[] big = new char[3 << 20]; // larger than the buffer
+		Arrays.fill(big, 'x');
+		RedBlackTree<String> tree = new RedBlackTree<>("pear", "apple", "\u00e9clair", "apple", new String(big), "");
+		Path file = Files.createTempFile("rbtree", ".snapshot");
+		try {
+			RedBlackTreeSerializer.write(tree, file, RedBlackTreeSerializer.STRING);
+			RedBlackTree<String> copy = RedBlackTreeSerializer.read(file, RedBlackTreeSerializer.STRING);
+			assertEquals(toList(tree), toList(copy));
+			assertEquals(2, copy.find("apple").getNodesAtLocation());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void stringCodecTest() {
+		String[] keys = {"", "plain", "caf\u00e9", "\u20ac \u4e2d\u6587", "\ud83d\ude00 smile", "lone \ud83d high",
+				"lone \ude00 low", "\ud83d"};
+		for (String key : keys) {
+			byte[] expected = key.getBytes(StandardCharsets.UTF_8);
+			assertEquals(expected.length, RedBlackTreeSerializer.STRING.encodedLength(key));
+			ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+			RedBlackTreeSerializer.STRING.encode(key, buffer);
+			assertArrayEquals(expected, buffer.array());
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void truncatedTest() throws IOException {
+		RedBlackTree<Long> tree = new RedBlackTree<>(1L, 2L, 3L);
+		byte[] bytes = write(tree, RedBlackTreeSerializer.LONG);
+		read(Arrays.copyOf(bytes, bytes.length - 1), RedBlackTreeSerializer.LONG);
+	}
+
+}
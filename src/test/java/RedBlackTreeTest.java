@@ -2,6 +2,18 @@
 import org.junit.*;
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 public class RedBlackTreeTest {
 	
 	@Test
@@ -69,5 +81,372 @@ public class RedBlackTreeTest {
 		System.out.println(tree.toString());
 	}
 
+	@Test
+	public void randomInsertDeleteTest() {
+		Random random = new Random(42);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < 2000; i++) {
+			int key = random.nextInt(1000);
+			if (!expected.contains(key)) tree.emplace(key);
+			expected.add(key);
+		}
+		assertValid(tree);
+		assertEquals(expected.size(), tree.getSize());
+		for (int i = 0; i < 2000; i++) {
+			int key = random.nextInt(1000);
+			tree.delete(key);
+			expected.remove(key);
+			assertFalse(tree.contains(key));
+		}
+		assertValid(tree);
+		assertEquals(expected.size(), tree.getSize());
+		for (int key : expected) assertTrue(tree.contains(key));
+	}
+
+	@Test
+	public void joinTest() {
+		RedBlackTree<Integer> lhs = RedBlackTree.generateIntegerTree(100);
+		RedBlackTree<Integer> rhs = new RedBlackTree<>();
+		for (int i = 101; i < 110; i++) rhs.emplace(i);
+		RedBlackTree<Integer> joined = RedBlackTree.joinTrees(lhs, 100, rhs);
+		assertValid(joined);
+		assertEquals(110, joined.getSize());
+		for (int i = 0; i < 110; i++) assertTrue(joined.contains(i));
+		assertNull(lhs.getRoot());
+		assertNull(rhs.getRoot());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void joinOutOfOrderTest() {
+		RedBlackTree.joinTrees(RedBlackTree.generateIntegerTree(10), 5, new RedBlackTree<Integer>());
+	}
+
+	@Test
+	public void splitTest() {
+		for (int partition = -1; partition <= 64; partition++) {
+			RedBlackTree<Integer> lower = RedBlackTree.generateIntegerTree(64);
+			RedBlackTree.TreeNode<Integer> node = lower.find(Math.max(0, Math.min(63, partition)));
+			RedBlackTree<Integer> upper = RedBlackTree.splitTree(lower, partition);
+			assertValid(lower);
+			assertValid(upper);
+			int expectedLower = Math.max(0, Math.min(64, partition));
+			assertEquals(expectedLower, lower.getSize());
+			assertEquals(64 - expectedLower, upper.getSize());
+			for (int i = 0; i < 64; i++) {
+				assertEquals(i < partition, lower.contains(i));
+				assertEquals(i >= partition, upper.contains(i));
+			}
+			// nodes are moved, not copied
+			assertTrue(node == lower.find(node.getData()) || node == upper.find(node.getData()));
+		}
+	}
+
+	@Test
+	public void unionTest() {
+		RedBlackTree<Integer> union = RedBlackTree.union(new RedBlackTree<>(1, 2, 2, 3), new RedBlackTree<>(2, 4));
+		assertValid(union);
+		assertEquals(4, union.getSize());
+		assertEquals(3, union.find(2).getNodesAtLocation());
+		assertEquals(1, union.find(4).getNodesAtLocation());
+	}
+
+	@Test
+	public void intersectTest() {
+		RedBlackTree<Integer> intersection = RedBlackTree.intersect(new RedBlackTree<>(1, 2, 2, 2, 3), new RedBlackTree<>(2, 2, 3, 4));
+		assertValid(intersection);
+		assertEquals(2, intersection.getSize());
+		assertEquals(2, intersection.find(2).getNodesAtLocation());
+		assertEquals(1, intersection.find(3).getNodesAtLocation());
+		assertFalse(intersection.contains(1));
+	}
+
+	@Test
+	public void differenceTest() {
+		RedBlackTree<Integer> difference = RedBlackTree.difference(new RedBlackTree<>(1, 2, 2, 2, 3), new RedBlackTree<>(2, 3, 3, 4));
+		assertValid(difference);
+		assertEquals(2, difference.getSize());
+		assertEquals(2, difference.find(2).getNodesAtLocation());
+		assertFalse(difference.contains(3));
+		assertFalse(difference.contains(4));
+	}
+
+	@Test
+	public void symmetricDifferenceTest() {
+		RedBlackTree<Integer> difference = RedBlackTree.symmetricDifference(new RedBlackTree<>(1, 2, 3, 3), new RedBlackTree<>(2, 3, 4));
+		assertValid(difference);
+		assertEquals(3, difference.getSize());
+		assertFalse(difference.contains(2));
+		assertEquals(1, difference.find(3).getNodesAtLocation());
+	}
+
+	@Test
+	public void parallelSetOperationTest() {
+		RedBlackTree<Integer> evens = new RedBlackTree<>();
+		RedBlackTree<Integer> threes = new RedBlackTree<>();
+		for (int i = 0; i < 30000; i += 2) evens.emplace(i);
+		for (int i = 0; i < 30000; i += 3) threes.emplace(i);
+		RedBlackTree<Integer> union = RedBlackTree.union(evens, threes, 16);
+		assertValid(union);
+		assertEquals(20000, union.getSize());
+		assertEquals(0, evens.getSize());
+		assertEquals(0, threes.getSize());
+		for (int i = 0; i < 30000; i++) assertEquals(i % 2 == 0 || i % 3 == 0, union.contains(i));
+	}
+
+	@Test
+	public void buildFromSortedTest() {
+		for (int size = 0; size < 130; size++) {
+			Integer[] keys = new Integer[size];
+			for (int i = 0; i < size; i++) keys[i] = i;
+			RedBlackTree<Integer> tree = RedBlackTree.buildFromSorted(keys);
+			assertValid(tree);
+			assertEquals(size, tree.getSize());
+			for (int i = 0; i < size; i++) assertTrue(tree.contains(i));
+			tree.emplace(size);
+			tree.delete(0);
+			assertValid(tree);
+		}
+	}
+
+	@Test
+	public void buildFromUnsortedTest() {
+		List<Integer> keys = Arrays.asList(5, 3, 9, 3, 1, 9, 9, 7);
+		RedBlackTree<Integer> tree = RedBlackTree.buildFromUnsorted(keys);
+		assertValid(tree);
+		assertEquals(5, tree.getSize());
+		assertEquals(2, tree.find(3).getNodesAtLocation());
+		assertEquals(3, tree.find(9).getNodesAtLocation());
+		assertEquals(Arrays.asList(5, 3, 9, 3, 1, 9, 9, 7), keys); // input is left alone
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void buildFromSortedRejectsUnsortedTest() {
+		RedBlackTree.buildFromSorted(Arrays.asList(1, 3, 2));
+	}
+
+	@Test
+	public void orderStatisticsTest() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int i = 0; i < 100; i++) tree.emplace(i * 2);
+		tree.emplace(10);
+		tree.emplace(10);
+		assertEquals(0, tree.rank(0));
+		assertEquals(5, tree.rank(10));
+		assertEquals(8, tree.rank(11));
+		assertEquals(102, tree.rank(1000));
+		assertEquals(8, (int) tree.select(4));
+		assertEquals(10, (int) tree.select(5));
+		assertEquals(10, (int) tree.select(7));
+		assertEquals(12, (int) tree.select(8));
+		assertEquals(198, (int) tree.select(101));
+		assertEquals(5, tree.countRange(8, 12));
+		assertEquals(4, tree.countRange(9, 12));
+		assertEquals(0, tree.countRange(12, 8));
+		assertEquals(102, tree.countRange(-5, 500));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void selectOutOfBoundsTest() {
+		RedBlackTree.generateIntegerTree(3).select(3);
+	}
+
+	@Test
+	public void orderStatisticsAfterUpdatesTest() {
+		Random random = new Random(8);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			int key = random.nextInt(500);
+			if (random.nextInt(3) > 0) {
+				tree.emplace(key);
+				expected.add(key);
+			} else {
+				tree.delete(key);
+				expected.remove((Integer) key);
+			}
+		}
+		Collections.sort(expected);
+		assertValid(tree);
+		for (int i = 0; i < expected.size(); i++) assertEquals(expected.get(i), tree.select(i));
+		RedBlackTree<Integer> upper = RedBlackTree.splitTree(tree, 250);
+		assertValid(tree);
+		assertValid(upper);
+		assertEquals(expected.stream().filter(k -> k < 250).count(), tree.rank(1000));
+		RedBlackTree<Integer> union = RedBlackTree.union(tree, upper, 1);
+		assertValid(union);
+		assertEquals(expected.size(), union.rank(1000));
+	}
+
+	@Test
+	public void iteratorTest() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>(5, 3, 9, 3, 1);
+		List<Integer> ascending = new ArrayList<>();
+		for (int key : tree) ascending.add(key);
+		assertEquals(Arrays.asList(1, 3, 3, 5, 9), ascending);
+		List<Integer> descending = new ArrayList<>();
+		tree.descendingIterator().forEachRemaining(descending::add);
+		assertEquals(Arrays.asList(9, 5, 3, 3, 1), descending);
+		assertFalse(new RedBlackTree<Integer>().iterator().hasNext());
+	}
+
+	@Test
+	public void rangeViewTest() {
+		RedBlackTree<Integer> tree = RedBlackTree.generateIntegerTree(20);
+		assertEquals(Arrays.asList(5, 6, 7), toList(tree.subSet(5, 8)));
+		assertEquals(Arrays.asList(6, 7, 8), toList(tree.subSet(5, false, 8, true)));
+		assertEquals(Arrays.asList(0, 1, 2), toList(tree.headSet(3)));
+		assertEquals(Arrays.asList(18, 19), toList(tree.tailSet(17, false)));
+		assertEquals(0, tree.subSet(8, 5).size());
+		assertEquals(3, tree.subSet(5, 8).size());
+		assertFalse(tree.subSet(5, 8).contains(8));
+		List<Integer> descending = new ArrayList<>();
+		tree.subSet(5, true, 8, true).descendingIterator().forEachRemaining(descending::add);
+		assertEquals(Arrays.asList(8, 7, 6, 5), descending);
+		// views are lazy
+		RedBlackTree<Integer>.RangeView tail = tree.tailSet(18);
+		tree.emplace(25);
+		assertEquals(Arrays.asList(18, 19, 25), toList(tail));
+	}
+
+	@Test
+	public void parallelStreamTest() {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		for (int i = 0; i < 10000; i++) tree.emplace(i);
+		tree.emplace(42);
+		assertEquals(10001, tree.stream().count());
+		assertEquals(49995000L + 42, tree.stream().parallel().mapToLong(Integer::longValue).sum());
+		List<Integer> collected = tree.subSet(100, 200).parallelStream().collect(Collectors.toList());
+		assertEquals(toList(tree.subSet(100, 200)), collected);
+		Spliterator<Integer> whole = tree.spliterator();
+		Spliterator<Integer> half = whole.trySplit();
+		assertEquals(10001, half.estimateSize() + whole.estimateSize());
+		assertTrue(Math.abs(half.estimateSize() - whole.estimateSize()) <= 2);
+	}
+
+	@Test
+	public void fingerInsertionTest() {
+		RedBlackTree<Integer> ascending = new RedBlackTree<>();
+		for (int i = 0; i < 5000; i++) ascending.emplaceNearLast(i);
+		assertValid(ascending);
+		assertEquals(5000, ascending.getSize());
+		RedBlackTree<Integer> descending = new RedBlackTree<>();
+		for (int i = 5000; i > 0; i--) descending.emplaceNearLast(i);
+		assertValid(descending);
+		assertEquals(5000, descending.getSize());
+
+		Random random = new Random(7);
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		List<Integer> expected = new ArrayList<>();
+		RedBlackTree.TreeNode<Integer> hint = null;
+		for (int i = 0; i < 3000; i++) {
+			int key = random.nextInt(500);
+			hint = tree.emplace(key, hint);
+			assertEquals(Integer.valueOf(key), hint.getData());
+			expected.add(key);
+			if (i % 3 == 0) {
+				int trash = random.nextInt(500);
+				if (expected.remove(Integer.valueOf(trash))) tree.delete(trash);
+				hint = null;
+				tree.emplaceNearLast(key); // the last inserted node may have been deleted
+				expected.add(key);
+			}
+		}
+		assertValid(tree);
+		Collections.sort(expected);
+		assertEquals(expected, toList(tree));
+	}
+
+	@Test
+	public void statisticsTest() throws Exception {
+		RedBlackTree<Integer> tree = new RedBlackTree<>();
+		tree.emplace(0);
+		assertEquals(0, tree.getStatistics().getInserts());
+		tree.setStatisticsEnabled(true);
+		for (int i = 1; i <= 1000; i++) tree.emplace(i);
+		for (int i = 0; i < 500; i++) tree.delete(i);
+		tree.contains(700);
+		RedBlackTreeStatistics statistics = tree.getStatistics();
+		assertEquals(1000, statistics.getInserts());
+		assertEquals(500, statistics.getDeletes());
+		assertEquals(1, statistics.getSearches());
+		assertTrue(statistics.getRotations() > 0);
+		assertTrue(statistics.getRecolorings() > 0);
+		assertTrue(statistics.getComparisonsPerOperation() > 1);
+		assertEquals(501, statistics.getSize());
+		assertValid(tree);
+
+		ObjectName name = RedBlackTreeStatistics.register(tree, "datastructures:type=RedBlackTree,name=statisticsTest");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(1000L, server.getAttribute(name, "Inserts"));
+			assertEquals(501, server.getAttribute(name, "Size"));
+			// the JMX side only sees what the owner publishes
+			for (int i = 2000; i < 2000 + 1048; i++) tree.emplace(i); // up to the 2048th insert, which publishes
+			assertEquals(2048L, server.getAttribute(name, "Inserts"));
+			tree.emplace(-1);
+			assertEquals(2048L, server.getAttribute(name, "Inserts"));
+			tree.publishStatistics();
+			assertEquals(2049L, server.getAttribute(name, "Inserts"));
+			assertEquals(1550, server.getAttribute(name, "Size"));
+		} finally {
+			RedBlackTreeStatistics.unregister(name);
+		}
+		tree.setStatisticsEnabled(false);
+		tree.emplace(5000);
+		assertEquals(0, tree.getStatistics().getComparisons());
+	}
+
+	private static List<Integer> toList(Iterable<Integer> keys) {
+		List<Integer> list = new ArrayList<>();
+		for (int key : keys) list.add(key);
+		return list;
+	}
+
+	/*
+	 * Checks the binary search tree ordering, parent pointers and red-black properties.
+	 */
+	private static <T extends Comparable<? super T>> void assertValid(RedBlackTree<T> tree) {
+		assertEquals(checkSubtree(tree.getRoot()) - 1, tree.getBlackHeight());
+		assertEquals(checkSubtreeNodes(tree.getRoot()), tree.getSize());
+		if (tree.getRoot() == null) return;
+		assertTrue(tree.getRoot().isBlack());
+		assertNull(tree.getRoot().getParent());
+		checkSubtreeSizes(tree.getRoot());
+		assertTrue(tree.getHeight() <= tree.getHeightBound());
+	}
+
+	private static <T extends Comparable<? super T>> int checkSubtreeSizes(RedBlackTree.TreeNode<T> node) {
+		if (node == null) return 0;
+		int size = checkSubtreeSizes(node.getLeftChild()) + node.getNodesAtLocation() + checkSubtreeSizes(node.getRightChild());
+		assertEquals(size, node.getSubtreeSize());
+		return size;
+	}
+
+	private static <T extends Comparable<? super T>> int checkSubtreeNodes(RedBlackTree.TreeNode<T> node) {
+		if (node == null) return 0;
+		int nodes = checkSubtreeNodes(node.getLeftChild()) + 1 + checkSubtreeNodes(node.getRightChild());
+		assertEquals(nodes, node.getSubtreeNodes());
+		return nodes;
+	}
+
+	private static <T extends Comparable<? super T>> int checkSubtree(RedBlackTree.TreeNode<T> node) {
+		if (node == null) return 1;
+		RedBlackTree.TreeNode<T> left = node.getLeftChild();
+		RedBlackTree.TreeNode<T> right = node.getRightChild();
+		if (left != null) {
+			assertTrue(left.getParent() == node);
+			assertTrue(left.getData().compareTo(node.getData()) < 0);
+			assertFalse(node.isRed() && left.isRed());
+		}
+		if (right != null) {
+			assertTrue(right.getParent() == node);
+			assertTrue(right.getData().compareTo(node.getData()) > 0);
+			assertFalse(node.isRed() && right.isRed());
+		}
+		int blackHeight = checkSubtree(left);
+		assertEquals(blackHeight, checkSubtree(right));
+		return blackHeight + (node.isBlack() ? 1 : 0);
+	}
 
 }
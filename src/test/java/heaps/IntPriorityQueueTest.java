@@ -0,0 +1,117 @@
+package heaps;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/* Runs every IntPriorityQueue.Kind through the same random operations as a
+ * plain array model. Priorities never go below the last one taken out, so
+ * the monotone RadixHeap gets the same workload as the others.
+ */
+public class IntPriorityQueueTest {
+
+	private static final int IDS = 300;
+	private static final int OPERATIONS = 50000;
+	private static final int ABSENT = -1;
+
+	@Test
+	public void randomOperationsTest() {
+		for (IntPriorityQueue.Kind kind : IntPriorityQueue.Kind.values()) {
+			checkAgainstModel(kind, new Random(kind.ordinal()));
+		}
+	}
+
+	private static void checkAgainstModel(IntPriorityQueue.Kind kind, Random random) {
+		IntPriorityQueue queue = kind.create(16); // small, so the id arrays have to grow
+		int[] model = new int[IDS]; // id -> priority, or ABSENT
+		Arrays.fill(model, ABSENT);
+		int size = 0;
+		int last = 0; // lowest priority still allowed
+		for (int op = 0; op < OPERATIONS; op++) {
+			int id = random.nextInt(IDS);
+			int pr = last + random.nextInt(1000);
+			String step = kind + " step " + op;
+			switch (random.nextInt(7)) {
+			case 0:
+			case 1:
+				if (model[id] == ABSENT) {
+					queue.enQueue(id, pr);
+					model[id] = pr;
+					size++;
+				} else {
+					// decrease-key and increase-key
+					queue.changePriority(id, pr);
+					model[id] = pr;
+				}
+				break;
+			case 2:
+				if (model[id] == ABSENT) {
+					size++;
+				}
+				queue.enQueueOrChange(id, pr);
+				model[id] = pr;
+				break;
+			case 3:
+				assertEquals(step, model[id] != ABSENT, queue.remove(id));
+				if (model[id] != ABSENT) {
+					model[id] = ABSENT;
+					size--;
+				}
+				break;
+			case 4:
+			case 5:
+				if (size == 0) {
+					try {
+						queue.deQueue();
+						fail(step + ": dequeued from an empty queue");
+					} catch (NoSuchElementException expected) {
+					}
+					break;
+				}
+				int lowest = lowest(model);
+				assertEquals(step, lowest, queue.peekPriority());
+				int taken = queue.deQueue();
+				assertEquals(step, lowest, model[taken]); // any id among equal priorities
+				model[taken] = ABSENT;
+				size--;
+				last = lowest;
+				break;
+			default:
+				if (random.nextInt(500) == 0) {
+					queue.clear();
+					Arrays.fill(model, ABSENT);
+					size = 0;
+				}
+			}
+			assertEquals(step, size, queue.size());
+			assertEquals(step, size == 0, queue.isEmpty());
+			int probe = random.nextInt(IDS);
+			assertEquals(step, model[probe] != ABSENT, queue.contains(probe));
+			if (model[probe] != ABSENT) {
+				assertEquals(step, model[probe], queue.priorityOf(probe));
+			}
+		}
+		// whatever is left comes out in order
+		while (size > 0) {
+			int lowest = lowest(model);
+			int taken = queue.deQueue();
+			assertEquals(kind.toString(), lowest, model[taken]);
+			model[taken] = ABSENT;
+			size--;
+		}
+		assertTrue(queue.isEmpty());
+	}
+
+	private static int lowest(int[] model) {
+		int lowest = Integer.MAX_VALUE;
+		for (int pr : model) {
+			if (pr != ABSENT && pr < lowest) {
+				lowest = pr;
+			}
+		}
+		return lowest;
+	}
+}
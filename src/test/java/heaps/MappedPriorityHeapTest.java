@@ -0,0 +1,278 @@
+package heaps;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/* Stages crashes by writing the file the way an interrupted operation leaves
+ * it, including the undo record in the header, and checks that reopening
+ * gets every entry back in heap order.
+ */
+public class MappedPriorityHeapTest {
+
+	private static final int[] ARITIES = {2, 4, 8};
+	private static final int ENTRIES = 100;
+
+	private static Path newHeapFile() throws IOException {
+		Path file = Files.createTempFile("mapped-heap", ".bin");
+		Files.delete(file);
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	/* Queues ENTRIES random entries with ids 0.. and returns them as {priority, id}. */
+	private static List<long[]> fill(Path file, int arity, Random random) throws IOException {
+		List<long[]> entries = new ArrayList<>();
+		try (MappedPriorityHeap heap = MappedPriorityHeap.open(file, arity, false)) {
+			for (int id = 0; id < ENTRIES; id++) {
+				long pr = random.nextInt(1000);
+				heap.enQueue(id, pr);
+				entries.add(new long[] {pr, id});
+			}
+		}
+		return entries;
+	}
+
+	/* Dequeues everything, checking the order, and compares it with expected. */
+	private static void assertDrains(Path file, List<long[]> expected) throws IOException {
+		List<long[]> drained = new ArrayList<>();
+		try (MappedPriorityHeap heap = MappedPriorityHeap.open(file)) {
+			assertEquals(expected.size(), heap.size());
+			while (!heap.isEmpty()) {
+				long pr = heap.peekPriority();
+				if (!drained.isEmpty()) {
+					assertTrue(drained.get(drained.size() - 1)[0] <= pr);
+				}
+				drained.add(new long[] {pr, heap.deQueue()});
+			}
+		}
+		Comparator<long[]> order = Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]);
+		List<long[]> sorted = new ArrayList<>(expected);
+		sorted.sort(order);
+		drained.sort(order);
+		for (int idx = 0; idx < sorted.size(); idx++) {
+			assertArrayEquals(sorted.get(idx), drained.get(idx));
+		}
+	}
+
+	/* The file as the heap lays it out: the header, then 16 byte slots. */
+	private static final class RawHeap implements AutoCloseable {
+		final FileChannel channel;
+		final MappedByteBuffer bytes;
+		final int arity;
+		final int shift;
+		final long root;
+
+		RawHeap(Path file, int arity) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			bytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			bytes.order(ByteOrder.nativeOrder());
+			this.arity = arity;
+			this.shift = Integer.numberOfTrailingZeros(arity);
+			this.root = arity - 1;
+		}
+
+		long get(int offset) {
+			return bytes.getLong(offset);
+		}
+
+		void put(int offset, long value) {
+			bytes.putLong(offset, value);
+		}
+
+		void putState(int state) {
+			bytes.putInt(MappedPriorityHeap.STATE_OFFSET, state);
+		}
+
+		long size() {
+			return get(MappedPriorityHeap.SIZE_OFFSET);
+		}
+
+		long[] entry(long slot) {
+			int offset = (int) (MappedPriorityHeap.HEADER_BYTES + slot * MappedPriorityHeap.ENTRY_BYTES);
+			return new long[] {bytes.getLong(offset), bytes.getLong(offset + 8)};
+		}
+
+		void putEntry(long slot, long[] entry) {
+			int offset = (int) (MappedPriorityHeap.HEADER_BYTES + slot * MappedPriorityHeap.ENTRY_BYTES);
+			bytes.putLong(offset, entry[0]);
+			bytes.putLong(offset + 8, entry[1]);
+		}
+
+		long parent(long slot) {
+			return (slot >>> shift) + arity - 2;
+		}
+
+		long firstChild(long slot) {
+			return (slot - arity + 2) << shift;
+		}
+
+		// What beginOperation records before the sift starts.
+		void beginOperation(int state, long hole, long[] pending) {
+			put(MappedPriorityHeap.PENDING_PRIORITY_OFFSET, pending[0]);
+			put(MappedPriorityHeap.PENDING_ID_OFFSET, pending[1]);
+			put(MappedPriorityHeap.HOLE_OFFSET, hole);
+			put(MappedPriorityHeap.OP_SIZE_OFFSET, size());
+			putState(state);
+		}
+
+		/* Moves the hole up at most steps times, as siftUp does before it
+		 * writes the pending entry.
+		 */
+		void siftUp(long steps) {
+			long pr = get(MappedPriorityHeap.PENDING_PRIORITY_OFFSET);
+			long hole = get(MappedPriorityHeap.HOLE_OFFSET);
+			for (long step = 0; step < steps && hole > root; step++) {
+				long parentSlot = parent(hole);
+				if (entry(parentSlot)[0] <= pr) {
+					break;
+				}
+				putEntry(hole, entry(parentSlot));
+				hole = parentSlot;
+				put(MappedPriorityHeap.HOLE_OFFSET, hole);
+			}
+		}
+
+		// Same for siftDown, over the first size slots.
+		void siftDown(long steps) {
+			long pr = get(MappedPriorityHeap.PENDING_PRIORITY_OFFSET);
+			long hole = get(MappedPriorityHeap.HOLE_OFFSET);
+			long end = root + size();
+			for (long step = 0; step < steps && firstChild(hole) < end; step++) {
+				long best = firstChild(hole);
+				for (long c = best + 1; c < Math.min(firstChild(hole) + arity, end); c++) {
+					if (entry(c)[0] < entry(best)[0]) {
+						best = c;
+					}
+				}
+				if (entry(best)[0] >= pr) {
+					break;
+				}
+				putEntry(hole, entry(best));
+				hole = best;
+				put(MappedPriorityHeap.HOLE_OFFSET, hole);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			bytes.force();
+			channel.close();
+		}
+	}
+
+	@Test
+	public void interruptedEnQueueTest() throws IOException {
+		Random random = new Random(1);
+		for (int arity : ARITIES) {
+			for (int steps = 0; steps <= 8; steps++) {
+				for (boolean sizeWritten : new boolean[] {false, true}) {
+					Path file = newHeapFile();
+					List<long[]> expected = fill(file, arity, random);
+					long[] added = {-1, ENTRIES}; // belongs at the root, so the sift goes all the way
+					try (RawHeap raw = new RawHeap(file, arity)) {
+						raw.beginOperation(MappedPriorityHeap.ENQUEUING, raw.root + ENTRIES, added);
+						if (sizeWritten) {
+							raw.put(MappedPriorityHeap.SIZE_OFFSET, ENTRIES + 1);
+							raw.siftUp(steps);
+						}
+					}
+					expected.add(added);
+					assertDrains(file, expected);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void interruptedDeQueueTest() throws IOException {
+		Random random = new Random(2);
+		for (int arity : ARITIES) {
+			for (int steps = 0; steps <= 8; steps++) {
+				for (boolean sizeWritten : new boolean[] {false, true}) {
+					Path file = newHeapFile();
+					List<long[]> expected = fill(file, arity, random);
+					try (RawHeap raw = new RawHeap(file, arity)) {
+						long[] removed = raw.entry(raw.root);
+						raw.put(MappedPriorityHeap.REMOVED_PRIORITY_OFFSET, removed[0]);
+						raw.put(MappedPriorityHeap.REMOVED_ID_OFFSET, removed[1]);
+						raw.beginOperation(MappedPriorityHeap.DEQUEUING, raw.root, raw.entry(raw.root + ENTRIES - 1));
+						if (sizeWritten) {
+							raw.put(MappedPriorityHeap.SIZE_OFFSET, ENTRIES - 1);
+							raw.put(MappedPriorityHeap.HEAP_SIZE_OFFSET, ENTRIES - 1);
+							raw.siftDown(steps);
+						}
+					}
+					// rolled back: the removed entry is queued again
+					assertDrains(file, expected);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void interruptedBatchTest() throws IOException {
+		Random random = new Random(3);
+		for (int arity : ARITIES) {
+			for (int steps = -1; steps <= 8; steps++) {
+				Path file = newHeapFile();
+				List<long[]> expected = fill(file, arity, random);
+				try (RawHeap raw = new RawHeap(file, arity)) {
+					// appended in batch mode and counted, but not heaped yet
+					for (int idx = 0; idx < 10; idx++) {
+						long[] appended = {-1 - random.nextInt(1000), ENTRIES + idx};
+						raw.putEntry(raw.root + ENTRIES + idx, appended);
+						expected.add(appended);
+					}
+					raw.put(MappedPriorityHeap.SIZE_OFFSET, ENTRIES + 10);
+					if (steps >= 0) { // the flush got as far as sifting up the first one
+						raw.beginOperation(MappedPriorityHeap.REBUILDING, raw.root + ENTRIES, raw.entry(raw.root + ENTRIES));
+						raw.siftUp(steps);
+					}
+				}
+				assertDrains(file, expected);
+			}
+		}
+	}
+
+	@Test
+	public void operationsSurviveReopenTest() throws IOException {
+		Random random = new Random(4);
+		Path file = newHeapFile();
+		// ordered like assertDrains, so ties between equal priorities can leave in any order
+		TreeSet<long[]> model = new TreeSet<>(Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+		long nextId = 0;
+		for (int round = 0; round < 20; round++) {
+			try (MappedPriorityHeap heap = MappedPriorityHeap.open(file, 4, false)) {
+				assertEquals(model.size(), heap.size());
+				if (random.nextBoolean()) {
+					heap.beginBatch();
+				}
+				for (int op = 0; op < 200; op++) {
+					if (model.isEmpty() || random.nextInt(3) > 0) {
+						long pr = random.nextInt(500);
+						heap.enQueue(nextId, pr);
+						model.add(new long[] {pr, nextId++});
+					} else {
+						long pr = model.first()[0];
+						assertEquals(pr, heap.peekPriority());
+						assertTrue(model.remove(new long[] {pr, heap.deQueue()}));
+					}
+				}
+			}
+		}
+		assertDrains(file, new ArrayList<>(model));
+	}
+}